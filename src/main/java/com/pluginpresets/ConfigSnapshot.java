@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Getter;
+
+/**
+ * Snapshot of the user's current configs, see {@link CurrentConfigurations}. Snapshots are never changed:
+ * neither the lists nor the configs and settings in them, callers that need changed configs make their own copies.
+ * Lists are unmodifiable, but {@link PluginConfig} and {@link PluginSetting} are not, the configs and settings
+ * handed out are shared by every reader of the snapshot and are not copied for each caller. Their setters must
+ * not be called, use {@link PluginConfig#copy()} or {@link PluginSetting#copy()} first.
+ * Each snapshot has a higher generation than the ones published before it.
+ */
+public final class ConfigSnapshot
+{
+	static final ConfigSnapshot EMPTY = new ConfigSnapshot(0, Collections.emptyList());
+
+	@Getter
+	private final long generation;
+
+	/**
+	 * Unmodifiable, the configs in it are shared and must be copied before they are changed.
+	 */
+	@Getter
+	private final List<PluginConfig> pluginConfigs;
+
+	private final Map<String, PluginConfig> configsByName;
+	private final Map<String, PluginConfig> configsByConfigName;
+	private final Map<String, Map<String, PluginSetting>> settingsByConfigName;
+
+	/**
+	 * @param pluginConfigs configs with unmodifiable settings, not changed after this
+	 */
+	ConfigSnapshot(long generation, List<PluginConfig> pluginConfigs)
+	{
+		this.generation = generation;
+		this.pluginConfigs = Collections.unmodifiableList(pluginConfigs);
+		this.configsByName = new HashMap<>();
+		this.configsByConfigName = new HashMap<>();
+		this.settingsByConfigName = new HashMap<>();
+
+		for (PluginConfig config : pluginConfigs)
+		{
+			configsByName.putIfAbsent(config.getName(), config);
+			configsByConfigName.putIfAbsent(config.getConfigName(), config);
+			for (PluginSetting setting : config.getSettings())
+			{
+				settingsByConfigName.computeIfAbsent(getConfigName(config, setting), k -> new HashMap<>())
+					.putIfAbsent(setting.getKey(), setting);
+			}
+		}
+	}
+
+	private ConfigSnapshot(long generation, List<PluginConfig> pluginConfigs, Map<String, PluginConfig> configsByName,
+		Map<String, PluginConfig> configsByConfigName, Map<String, Map<String, PluginSetting>> settingsByConfigName)
+	{
+		this.generation = generation;
+		this.pluginConfigs = Collections.unmodifiableList(pluginConfigs);
+		this.configsByName = configsByName;
+		this.configsByConfigName = configsByConfigName;
+		this.settingsByConfigName = settingsByConfigName;
+	}
+
+	/**
+	 * @return current config of the plugin, shared so copy it before changing, null if there is no such plugin
+	 */
+	public PluginConfig getPluginConfig(String name)
+	{
+		return configsByName.get(name);
+	}
+
+	/**
+	 * @return current config of the plugin that has the given config group, shared so copy it before changing,
+	 * null if there is no such plugin
+	 */
+	public PluginConfig getPluginConfigByConfigName(String configName)
+	{
+		return configsByConfigName.get(configName);
+	}
+
+	/**
+	 * @return current setting with the given config group and key, shared so copy it before changing,
+	 * null if no plugin config has it
+	 */
+	public PluginSetting getSetting(String configName, String key)
+	{
+		Map<String, PluginSetting> settings = settingsByConfigName.get(configName);
+		return settings == null ? null : settings.get(key);
+	}
+
+	/**
+	 * @return next snapshot with the configs at the given positions replaced, only copies the lookups that changed
+	 */
+	ConfigSnapshot replace(long nextGeneration, List<PluginConfig> changedConfigs, Map<Integer, PluginConfig> replacedConfigs,
+		String configName, String key, PluginSetting changedSetting)
+	{
+		Map<String, PluginConfig> changedConfigsByName = new HashMap<>(configsByName);
+		Map<String, PluginConfig> changedConfigsByConfigName = new HashMap<>(configsByConfigName);
+		replacedConfigs.forEach((position, config) ->
+		{
+			PluginConfig replacedConfig = pluginConfigs.get(position);
+			if (changedConfigsByName.get(config.getName()) == replacedConfig)
+			{
+				changedConfigsByName.put(config.getName(), config);
+			}
+			if (changedConfigsByConfigName.get(config.getConfigName()) == replacedConfig)
+			{
+				changedConfigsByConfigName.put(config.getConfigName(), config);
+			}
+		});
+
+		Map<String, Map<String, PluginSetting>> changedSettingsByConfigName = settingsByConfigName;
+		if (changedSetting != null)
+		{
+			Map<String, PluginSetting> settings = new HashMap<>(settingsByConfigName.get(configName));
+			settings.put(key, changedSetting);
+			changedSettingsByConfigName = new HashMap<>(settingsByConfigName);
+			changedSettingsByConfigName.put(configName, settings);
+		}
+
+		return new ConfigSnapshot(nextGeneration, changedConfigs, changedConfigsByName, changedConfigsByConfigName, changedSettingsByConfigName);
+	}
+
+	/**
+	 * @return config group of the setting, custom settings have their own
+	 */
+	static String getConfigName(PluginConfig config, PluginSetting setting)
+	{
+		return setting.getCustomConfigName() != null ? setting.getCustomConfigName() : config.getConfigName();
+	}
+}
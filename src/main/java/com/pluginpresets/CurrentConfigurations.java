@@ -25,29 +25,329 @@
 package com.pluginpresets;
 
 import com.google.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
-import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.config.RuneLiteConfig;
+import net.runelite.client.plugins.Plugin;
 
 /**
- * Helper class that retrieves the user's current set of configs periodically
+ * Helper class that retrieves the user's current set of configs periodically.
+ * Configs are published as immutable {@link ConfigSnapshot}s, so they can be read from any thread.
+ * All configs are read on a background thread, single config changes are applied to the last snapshot
+ * without reading all configs again.
  */
+@Slf4j
 public class CurrentConfigurations
 {
+	/**
+	 * Latest snapshot of current configs, empty until configs are first read.
+	 */
 	@Getter
-	@Setter
-	private List<PluginConfig> pluginConfigs;
+	private volatile ConfigSnapshot snapshot = ConfigSnapshot.EMPTY;
+
+	/**
+	 * Positions of settings in the snapshot by config group and key, a key can be in more than one plugin config.
+	 */
+	private final Map<String, List<SettingPosition>> settingPositions = new HashMap<>();
+
+	/**
+	 * Positions of plugin configs in the snapshot by plugin name.
+	 */
+	private final Map<String, Integer> configPositions = new HashMap<>();
 
 	private final PluginPresetsCurrentConfigManager currentConfigManager;
 
+	private final ThreadPoolExecutor captureExecutor;
+
+	/**
+	 * Capture waiting for the capture thread, later requests share it since it reads configs after them anyway.
+	 */
+	private Capture queuedCapture;
+	private Capture runningCapture;
+
+	/**
+	 * Changes applied while a capture is running, applied again on the configs it read since it may have read
+	 * some of them before they changed.
+	 */
+	private List<ConfigChange> changesDuringCapture;
+
 	@Inject
 	public CurrentConfigurations(PluginPresetsCurrentConfigManager currentConfigManager)
 	{
 		this.currentConfigManager = currentConfigManager;
+
+		// Thread is only kept around while configs are read
+		captureExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable ->
+		{
+			Thread thread = new Thread(runnable, "ConfigCapture");
+			thread.setDaemon(true);
+			return thread;
+		});
+		captureExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return latest snapshot, waiting for configs to be read if they have not been read yet
+	 */
+	public ConfigSnapshot awaitSnapshot()
+	{
+		CompletableFuture<ConfigSnapshot> capture;
+		synchronized (this)
+		{
+			if (snapshot != ConfigSnapshot.EMPTY)
+			{
+				return snapshot;
+			}
+
+			// Capture already on its way reads the configs just as well
+			capture = queuedCapture != null ? queuedCapture.future
+				: runningCapture != null ? runningCapture.future
+				: update();
+		}
+		return capture.join();
+	}
+
+	public List<PluginConfig> getPluginConfigs()
+	{
+		return snapshot.getPluginConfigs();
+	}
+
+	/**
+	 * @see ConfigSnapshot#getPluginConfig(String)
+	 */
+	public PluginConfig getPluginConfig(String name)
+	{
+		return snapshot.getPluginConfig(name);
+	}
+
+	/**
+	 * @see ConfigSnapshot#getPluginConfigByConfigName(String)
+	 */
+	public PluginConfig getPluginConfigByConfigName(String configName)
+	{
+		return snapshot.getPluginConfigByConfigName(configName);
+	}
+
+	/**
+	 * @see ConfigSnapshot#getSetting(String, String)
+	 */
+	public PluginSetting getSetting(String configName, String key)
+	{
+		return snapshot.getSetting(configName, key);
+	}
+
+	/**
+	 * Reads all current configs again in the background. A capture that is still running is cancelled,
+	 * as it may have read configs before whatever made this update necessary.
+	 *
+	 * @return future completed with the published snapshot
+	 */
+	public synchronized CompletableFuture<ConfigSnapshot> update()
+	{
+		if (queuedCapture == null)
+		{
+			Capture capture = new Capture();
+			queuedCapture = capture;
+			captureExecutor.execute(() -> capture(capture));
+		}
+
+		if (runningCapture != null && !runningCapture.cancelled)
+		{
+			Capture cancelledCapture = runningCapture;
+			cancelledCapture.cancelled = true;
+			queuedCapture.future.whenComplete((snapshot, e) ->
+			{
+				if (e != null)
+				{
+					cancelledCapture.future.completeExceptionally(e);
+				}
+				else
+				{
+					cancelledCapture.future.complete(snapshot);
+				}
+			});
+		}
+
+		return queuedCapture.future;
+	}
+
+	private void capture(Capture capture)
+	{
+		synchronized (this)
+		{
+			queuedCapture = null;
+			runningCapture = capture;
+			changesDuringCapture = new ArrayList<>();
+		}
+
+		List<PluginConfig> capturedConfigs = null;
+		RuntimeException failure = null;
+		try
+		{
+			capturedConfigs = currentConfigManager.getCurrentConfigs(() -> capture.cancelled);
+		}
+		catch (RuntimeException e)
+		{
+			failure = e;
+		}
+
+		ConfigSnapshot published;
+		synchronized (this)
+		{
+			List<ConfigChange> changes = changesDuringCapture;
+			runningCapture = null;
+			changesDuringCapture = null;
+
+			if (capture.cancelled)
+			{
+				// Future is completed by the capture that replaced this one
+				return;
+			}
+
+			if (failure != null)
+			{
+				published = null;
+			}
+			else
+			{
+				publish(capturedConfigs);
+				changes.forEach(change -> update(change.group, change.key, change.value));
+				published = snapshot;
+			}
+		}
+
+		if (published == null)
+		{
+			log.warn("Failed to read current configs", failure);
+			capture.future.completeExceptionally(failure);
+		}
+		else
+		{
+			capture.future.complete(published);
+		}
+	}
+
+	private void publish(List<PluginConfig> capturedConfigs)
+	{
+		List<PluginConfig> currentConfigs = new ArrayList<>();
+		capturedConfigs.forEach(config -> currentConfigs.add(freeze(config, config.getSettings())));
+
+		settingPositions.clear();
+		configPositions.clear();
+		for (int i = 0; i < currentConfigs.size(); i++)
+		{
+			PluginConfig config = currentConfigs.get(i);
+			configPositions.putIfAbsent(config.getName(), i);
+
+			List<PluginSetting> settings = config.getSettings();
+			for (int j = 0; j < settings.size(); j++)
+			{
+				settingPositions.computeIfAbsent(getSettingKey(config, settings.get(j)), k -> new ArrayList<>())
+					.add(new SettingPosition(i, j));
+			}
+		}
+
+		snapshot = new ConfigSnapshot(snapshot.getGeneration() + 1, currentConfigs);
+	}
+
+	/**
+	 * Applies a changed config value to the current configs, publishing a new snapshot if something changed.
+	 * Configs are read if none have been read yet.
+	 *
+	 * @param group config group of the changed value
+	 * @param key   config key of the changed value
+	 * @param value new value, null if the value was unset
+	 */
+	public synchronized void update(String group, String key, String value)
+	{
+		if (changesDuringCapture != null)
+		{
+			changesDuringCapture.add(new ConfigChange(group, key, value));
+		}
+
+		ConfigSnapshot current = snapshot;
+		if (current == ConfigSnapshot.EMPTY)
+		{
+			if (runningCapture == null)
+			{
+				update();
+			}
+			return;
+		}
+
+		List<PluginConfig> currentConfigs = new ArrayList<>(current.getPluginConfigs());
+		Map<Integer, PluginConfig> replacedConfigs = new HashMap<>();
+		PluginSetting changedSetting = null;
+
+		for (SettingPosition position : settingPositions.getOrDefault(group + "." + key, Collections.emptyList()))
+		{
+			PluginConfig config = currentConfigs.get(position.config);
+			List<PluginSetting> settings = new ArrayList<>(config.getSettings());
+			changedSetting = settings.get(position.setting).copy();
+			changedSetting.setValue(value);
+			settings.set(position.setting, changedSetting);
+
+			PluginConfig changedConfig = freeze(config, settings);
+			currentConfigs.set(position.config, changedConfig);
+			replacedConfigs.put(position.config, changedConfig);
+		}
+
+		// Plugins are turned on/off by a key in RuneLite config group
+		Plugin plugin = RuneLiteConfig.GROUP_NAME.equals(group) ? currentConfigManager.getPluginBySwitchKey(key) : null;
+		Integer position = plugin != null ? configPositions.get(plugin.getName()) : null;
+		if (position != null)
+		{
+			PluginConfig config = currentConfigs.get(position);
+			PluginConfig changedConfig = new PluginConfig(config.getName(), config.getConfigName(),
+				currentConfigManager.isPluginEnabled(plugin), config.getSettings());
+			currentConfigs.set(position, changedConfig);
+			replacedConfigs.put(position, changedConfig);
+		}
+
+		if (!replacedConfigs.isEmpty())
+		{
+			snapshot = current.replace(current.getGeneration() + 1, currentConfigs, replacedConfigs, group, key, changedSetting);
+		}
+	}
+
+	private static PluginConfig freeze(PluginConfig config, List<PluginSetting> settings)
+	{
+		return new PluginConfig(config.getName(), config.getConfigName(), config.getEnabled(), Collections.unmodifiableList(settings));
+	}
+
+	private static String getSettingKey(PluginConfig config, PluginSetting setting)
+	{
+		return ConfigSnapshot.getConfigName(config, setting) + "." + setting.getKey();
+	}
+
+	private static class Capture
+	{
+		private final CompletableFuture<ConfigSnapshot> future = new CompletableFuture<>();
+		private volatile boolean cancelled;
+	}
+
+	@AllArgsConstructor
+	private static class ConfigChange
+	{
+		private final String group;
+		private final String key;
+		private final String value;
 	}
 
-	public void update()
+	@AllArgsConstructor
+	private static class SettingPosition
 	{
-		setPluginConfigs(currentConfigManager.getCurrentConfigs());
+		private final int config;
+		private final int setting;
 	}
 }
@@ -25,12 +25,17 @@
 package com.pluginpresets;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 /**
- * Container storing all custom settings from all plugins across all presets
+ * Container storing all custom settings from all plugins across all presets.
+ * Read by the background thread that reads current configs, so the settings are kept in a copy-on-write list.
  */
 @Singleton
 public class CustomSettingsManager
@@ -40,7 +45,7 @@ public class CustomSettingsManager
 	@Inject
 	public CustomSettingsManager()
 	{
-		this.settings = new ArrayList<>();
+		this.settings = new CopyOnWriteArrayList<>();
 	}
 
 	/**
@@ -86,20 +91,59 @@ public class CustomSettingsManager
 	/**
 	 * Finds and stores custom settings given all plugin presets
 	 * @param pluginPresets all the user's presets
+	 * @return true if current configs need to be read again for the custom settings
 	 */
-	public void parseCustomSettings(List<PluginPreset> pluginPresets)
+	public boolean parseCustomSettings(List<PluginPreset> pluginPresets)
 	{
+		Set<List<String>> previousKeys = getCurrentConfigKeys();
 		settings.clear();
 
-		pluginPresets.forEach(preset ->
-			preset.getPluginConfigs().forEach(configuration ->
-				configuration.getSettings().forEach(setting ->
+		pluginPresets.forEach(this::addCustomSettingsOf);
+		return !previousKeys.equals(getCurrentConfigKeys());
+	}
+
+	/**
+	 * Replaces custom settings of some presets without going through all the user's presets
+	 * @param removedPresets presets whose custom settings are removed
+	 * @param addedPresets presets whose custom settings are added
+	 * @return true if current configs need to be read again for the custom settings
+	 */
+	public boolean updateCustomSettings(List<PluginPreset> removedPresets, List<PluginPreset> addedPresets)
+	{
+		Set<List<String>> previousKeys = getCurrentConfigKeys();
+		settings.removeIf(s -> removedPresets.contains(s.parentPreset));
+
+		addedPresets.forEach(this::addCustomSettingsOf);
+		return !previousKeys.equals(getCurrentConfigKeys());
+	}
+
+	/**
+	 * Parts of the custom settings that current configs are read with, values in the presets don't matter there.
+	 */
+	private Set<List<String>> getCurrentConfigKeys()
+	{
+		Set<List<String>> keys = new HashSet<>();
+		settings.forEach(s -> keys.add(Arrays.asList(s.parentConfig.getConfigName(), s.setting.getName(),
+			s.setting.getKey(), s.setting.getCustomConfigName(), s.setting.getConfigName())));
+		return keys;
+	}
+
+	private void addCustomSettingsOf(PluginPreset preset)
+	{
+		// Presets with custom settings always have their configs loaded
+		if (!preset.isPluginConfigsLoaded())
+		{
+			return;
+		}
+
+		preset.getPluginConfigs().forEach(configuration ->
+			configuration.getSettings().forEach(setting ->
+			{
+				if (setting.getCustomConfigName() != null)
 				{
-					if (setting.getCustomConfigName() != null)
-					{
-						CustomSetting customSetting = new CustomSetting(setting, configuration, preset);
-						settings.add(customSetting);
-					}
-				})));
+					CustomSetting customSetting = new CustomSetting(setting, configuration, preset);
+					settings.add(customSetting);
+				}
+			}));
 	}
 }
@@ -2,7 +2,6 @@ package com.pluginpresets;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map.Entry;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -30,11 +29,12 @@ public class LegacyPluginPreset
 	{
 		PluginPreset convertedPreset = new PluginPreset(legacyPluginPreset.getName());
 		ArrayList<PluginConfig> pluginConfigs = new ArrayList<>();
+		ConfigSnapshot snapshot = currentConfigurations.awaitSnapshot(); // Legacy presets may be loaded on startup, before configs are read
 
 		for (Entry<String, Boolean> entry : legacyPluginPreset.getEnabledPlugins().entrySet())
 		{
 			String name = entry.getKey();
-			String configName = legacyGetConfigName(name, currentConfigurations.getPluginConfigs());
+			String configName = legacyGetConfigName(name, snapshot);
 
 			if (configName == null)
 			{
@@ -45,7 +45,7 @@ public class LegacyPluginPreset
 			}
 
 			HashMap<String, HashMap<String, String>> legacyPluginSettings = legacyPluginPreset.getPluginSettings();
-			ArrayList<PluginSetting> pluginSettings = legacyGetSettings(configName, currentConfigurations.getPluginConfigs(), legacyPluginSettings);
+			ArrayList<PluginSetting> pluginSettings = legacyGetSettings(configName, snapshot, legacyPluginSettings);
 
 			boolean enabled = entry.getValue();
 			PluginConfig pluginConfig = new PluginConfig(name, configName, enabled, pluginSettings);
@@ -56,20 +56,13 @@ public class LegacyPluginPreset
 		return convertedPreset;
 	}
 
-	private static String legacyGetConfigName(String name, List<PluginConfig> currentConfigurations)
+	private static String legacyGetConfigName(String name, ConfigSnapshot currentConfigurations)
 	{
-		for (PluginConfig pluginConfig : currentConfigurations)
-		{
-			if (pluginConfig.getName().equals(name))
-			{
-				return pluginConfig.getConfigName();
-			}
-		}
-
-		return null;
+		PluginConfig pluginConfig = currentConfigurations.getPluginConfig(name);
+		return pluginConfig != null ? pluginConfig.getConfigName() : null;
 	}
 
-	private static ArrayList<PluginSetting> legacyGetSettings(String configName, List<PluginConfig> currentConfigurations,
+	private static ArrayList<PluginSetting> legacyGetSettings(String configName, ConfigSnapshot currentConfigurations,
 															  HashMap<String, HashMap<String, String>> legacyPluginSettings)
 	{
 		ArrayList<PluginSetting> pluginSettings = new ArrayList<>();
@@ -93,22 +86,9 @@ public class LegacyPluginPreset
 		return pluginSettings;
 	}
 
-	private static String legacyGetSettingName(String configName, String key, List<PluginConfig> currentConfigurations)
+	private static String legacyGetSettingName(String configName, String key, ConfigSnapshot currentConfigurations)
 	{
-		for (PluginConfig pluginConfig : currentConfigurations)
-		{
-			if (pluginConfig.getConfigName().equals(configName))
-			{
-				for (PluginSetting setting : pluginConfig.getSettings())
-				{
-					if (setting.getKey().equals(key))
-					{
-						return setting.getName();
-					}
-				}
-			}
-		}
-
-		return null;
+		PluginSetting setting = currentConfigurations.getSetting(configName, key);
+		return setting != null ? setting.getName() : null;
 	}
 }
\ No newline at end of file
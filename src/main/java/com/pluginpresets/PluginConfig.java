@@ -24,7 +24,9 @@
  */
 package com.pluginpresets;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -60,15 +62,12 @@ public class PluginConfig
 			return false;
 		}
 
-		List<PluginSetting> currentSettings = settings;
+		Map<String, PluginSetting> currentSettings = getSettingsByKey();
 		// Compare plugin settings from preset to current config settings
 		for (PluginSetting presetConfigSetting : presetConfig.getSettings())
 		{
 			// Get current config setting for compared preset setting
-			PluginSetting currentConfigSetting = currentSettings.stream()
-				.filter(c ->c.getKey().equals(presetConfigSetting.getKey()))
-				.findFirst()
-				.orElse(null);
+			PluginSetting currentConfigSetting = currentSettings.get(presetConfigSetting.getKey());
 
 			if (currentConfigSetting != null &&
 				presetConfigSetting.getValue() != null &&
@@ -80,6 +79,19 @@ public class PluginConfig
 		return true;
 	}
 
+	/**
+	 * Settings by key, for looking up many settings. The first setting with a key is used, like in {@link #getSetting}.
+	 */
+	public Map<String, PluginSetting> getSettingsByKey()
+	{
+		Map<String, PluginSetting> settingsByKey = new HashMap<>();
+		if (settings != null)
+		{
+			settings.forEach(setting -> settingsByKey.putIfAbsent(setting.getKey(), setting));
+		}
+		return settingsByKey;
+	}
+
 	public PluginSetting getSetting(PluginSetting searchedSetting)
 	{
 		PluginSetting presetSetting = null;
@@ -97,6 +109,17 @@ public class PluginConfig
 		return presetSetting;
 	}
 
+	/**
+	 * Deep copy of this config, unaffected by later changes to this config.
+	 */
+	public PluginConfig copy()
+	{
+		List<PluginSetting> settingsCopy = settings == null ? null : settings.stream()
+			.map(PluginSetting::copy)
+			.collect(Collectors.toList());
+		return new PluginConfig(name, configName, enabled, settingsCopy);
+	}
+
 	public List<String> getSettingKeys()
 	{
 		return settings.stream().map(PluginSetting::getKey).collect(Collectors.toList());
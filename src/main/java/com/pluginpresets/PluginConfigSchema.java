@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import net.runelite.client.plugins.Plugin;
+
+/**
+ * Config settings that a plugin has, resolved once from its config descriptor, see {@link PluginConfigSchemaRegistry}.
+ *
+ * @param plugin     The plugin, null for RuneLite settings
+ * @param name       Name of the plugin configuration
+ * @param configName RuneLite config name
+ * @param items      Settings of the config, without ignored keys
+ */
+@Data
+@AllArgsConstructor
+public class PluginConfigSchema
+{
+	private Plugin plugin;
+	private String name;
+	private String configName;
+	private List<Item> items;
+
+	/**
+	 * @param name Displayed name of the setting
+	 * @param key  Key used internally by configManager
+	 */
+	@Data
+	@AllArgsConstructor
+	public static class Item
+	{
+		private String name;
+		private String key;
+	}
+}
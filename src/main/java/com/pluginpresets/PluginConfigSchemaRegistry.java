@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import net.runelite.client.config.Config;
+import net.runelite.client.config.ConfigDescriptor;
+import net.runelite.client.config.ConfigManager;
+import net.runelite.client.config.RuneLiteConfig;
+import net.runelite.client.plugins.Plugin;
+import net.runelite.client.plugins.PluginManager;
+
+/**
+ * Caches config schemas of plugins, so that reading current configs does not go through config proxies and
+ * config descriptors every time. Schemas only change when plugins are added or removed, which calls {@link #invalidate()}.
+ */
+@Singleton
+public class PluginConfigSchemaRegistry
+{
+	private final PluginManager pluginManager;
+	private final ConfigManager configManager;
+	private final RuneLiteConfig runeLiteConfig;
+
+	private List<PluginConfigSchema> pluginSchemas;
+	private PluginConfigSchema runeLiteSchema;
+
+	/**
+	 * Plugins by the key that turns them on/off in RuneLite config group.
+	 */
+	private Map<String, Plugin> pluginsBySwitchKey;
+
+	@Inject
+	public PluginConfigSchemaRegistry(PluginManager pluginManager, ConfigManager configManager, RuneLiteConfig runeLiteConfig)
+	{
+		this.pluginManager = pluginManager;
+		this.configManager = configManager;
+		this.runeLiteConfig = runeLiteConfig;
+	}
+
+	/**
+	 * @return schemas of all plugins that are not ignored, in plugin manager order
+	 */
+	public synchronized List<PluginConfigSchema> getPluginSchemas()
+	{
+		if (pluginSchemas == null)
+		{
+			resolveSchemas();
+		}
+		return pluginSchemas;
+	}
+
+	public synchronized PluginConfigSchema getRuneLiteSchema()
+	{
+		if (runeLiteSchema == null)
+		{
+			runeLiteSchema = new PluginConfigSchema(null, "RuneLite", RuneLiteConfig.GROUP_NAME,
+				resolveItems(configManager.getConfigDescriptor(runeLiteConfig), false));
+		}
+		return runeLiteSchema;
+	}
+
+	/**
+	 * @param key config key in RuneLite config group
+	 * @return plugin that the key turns on/off, null if the key is something else
+	 */
+	public synchronized Plugin getPluginBySwitchKey(String key)
+	{
+		if (pluginsBySwitchKey == null)
+		{
+			resolveSchemas();
+		}
+		return pluginsBySwitchKey.get(key);
+	}
+
+	/**
+	 * Drops cached schemas, they are resolved again when needed.
+	 */
+	public synchronized void invalidate()
+	{
+		pluginSchemas = null;
+		runeLiteSchema = null;
+		pluginsBySwitchKey = null;
+	}
+
+	private void resolveSchemas()
+	{
+		List<PluginConfigSchema> schemas = new ArrayList<>();
+		Map<String, Plugin> plugins = new HashMap<>();
+
+		pluginManager.getPlugins().forEach(p ->
+		{
+			String name = p.getName();
+			if (!PluginPresetsPlugin.IGNORED_PLUGINS.contains(name))
+			{
+				String switchKey = p.getClass().getSimpleName().toLowerCase();
+				plugins.put(switchKey, p);
+
+				Config pluginConfigProxy = pluginManager.getPluginConfigProxy(p);
+				if (pluginConfigProxy == null)
+				{
+					schemas.add(new PluginConfigSchema(p, name, switchKey, Collections.emptyList()));
+				}
+				else
+				{
+					ConfigDescriptor configDescriptor = configManager.getConfigDescriptor(pluginConfigProxy);
+					schemas.add(new PluginConfigSchema(p, name, configDescriptor.getGroup().value(), resolveItems(configDescriptor, true)));
+				}
+			}
+		});
+
+		pluginSchemas = Collections.unmodifiableList(schemas);
+		pluginsBySwitchKey = plugins;
+	}
+
+	private static List<PluginConfigSchema.Item> resolveItems(ConfigDescriptor configDescriptor, boolean nameFallback)
+	{
+		List<PluginConfigSchema.Item> items = new ArrayList<>();
+		configDescriptor.getItems().forEach(i ->
+		{
+			if (!PluginPresetsPlugin.IGNORED_KEYS.contains(i.key()))
+			{
+				String settingName = i.name();
+				if (nameFallback && i.name().equals(""))
+				{
+					settingName = PluginPresetsUtils.splitAndCapitalize(settingName);
+				}
+				items.add(new PluginConfigSchema.Item(settingName, i.key()));
+			}
+		});
+		return Collections.unmodifiableList(items);
+	}
+}
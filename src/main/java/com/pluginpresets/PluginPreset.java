@@ -26,7 +26,10 @@ package com.pluginpresets;
 
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.Setter;
 import net.runelite.client.config.Keybind;
@@ -73,10 +76,23 @@ public class PluginPreset
 	@Setter
 	private Boolean autoUpdated;
 
-	@Getter
+	/**
+	 * Null while the configs of a preset loaded from preset folder are not loaded, see {@link #getPluginConfigs()}.
+	 */
 	@Setter
 	private List<PluginConfig> pluginConfigs;
 
+	/**
+	 * Loads plugin configs of presets that were loaded from preset folder without them. Not stored.
+	 */
+	@Setter
+	private transient PresetBodyCache bodyCache;
+
+	/**
+	 * Result of the last match check against current configs, kept while the configs are not loaded. Not stored.
+	 */
+	private transient volatile MatchResult lastMatch;
+
 	public PluginPreset(String name)
 	{
 		this.id = Instant.now().toEpochMilli();
@@ -90,16 +106,16 @@ public class PluginPreset
 
 	public Boolean match(PluginPreset preset)
 	{
-		for (PluginConfig presetConfig : pluginConfigs)
+		Map<String, List<PluginConfig>> comparedConfigs = new HashMap<>();
+		preset.getPluginConfigs().forEach(config -> comparedConfigs.computeIfAbsent(config.getName(), k -> new ArrayList<>()).add(config));
+
+		for (PluginConfig presetConfig : getPluginConfigs())
 		{
-			for (PluginConfig comparedConfig : preset.getPluginConfigs())
+			for (PluginConfig comparedConfig : comparedConfigs.getOrDefault(presetConfig.getName(), new ArrayList<>()))
 			{
-				if (comparedConfig.getName().equals(presetConfig.getName()))
+				if (!presetConfig.match(comparedConfig))
 				{
-					if (!presetConfig.match(comparedConfig))
-					{
-						return false;
-					}
+					return false;
 				}
 			}
 		}
@@ -108,18 +124,41 @@ public class PluginPreset
 
 	public Boolean match(CurrentConfigurations currentConfigurations)
 	{
-		for (PluginConfig presetConfig : pluginConfigs)
+		return match(currentConfigurations.getSnapshot());
+	}
+
+	/**
+	 * Checks the preset against current configs. A preset whose configs are not loaded is only loaded if its
+	 * last result can't tell, see {@link MatchResult}. Nothing matches before current configs are first read.
+	 */
+	public Boolean match(ConfigSnapshot currentConfigurations)
+	{
+		if (currentConfigurations == ConfigSnapshot.EMPTY)
 		{
-			PluginConfig currentConfig = null;
-			for (PluginConfig config : currentConfigurations.getPluginConfigs())
+			return false;
+		}
+
+		MatchResult result = lastMatch;
+		if (result != null && !isPluginConfigsLoaded())
+		{
+			Boolean match = result.recheck(currentConfigurations);
+			if (match != null)
 			{
-				if (config.getName().equals(presetConfig.getName()))
-				{
-					currentConfig = config;
-					break;
-				}
+				return match;
 			}
+		}
 
+		List<PluginConfig> configs = getPluginConfigs();
+		result = check(configs, currentConfigurations);
+		lastMatch = result;
+		return result.match;
+	}
+
+	private static MatchResult check(List<PluginConfig> configs, ConfigSnapshot currentConfigurations)
+	{
+		for (PluginConfig presetConfig : configs)
+		{
+			PluginConfig currentConfig = currentConfigurations.getPluginConfig(presetConfig.getName());
 			if (currentConfig == null)
 			{
 				continue;
@@ -127,34 +166,31 @@ public class PluginPreset
 
 			if (presetConfig.getEnabled() != null && !presetConfig.getEnabled().equals(currentConfig.getEnabled()))
 			{
-				return false;
+				return new MatchResult(currentConfigurations, configs, presetConfig, null);
 			}
 
-			List<PluginSetting> currentSettings = currentConfig.getSettings();
 			// Compare plugin settings from preset to current config settings
 			for (PluginSetting presetConfigSetting : presetConfig.getSettings())
 			{
-				// Get current config setting for compared preset setting
-				PluginSetting currentConfigSetting = currentSettings.stream()
-					.filter(c -> c.getKey().equals(presetConfigSetting.getKey()))
-					.findFirst()
-					.orElse(null);
+				// Get current config setting for compared preset setting, custom settings are in their own config group
+				String configName = presetConfigSetting.getCustomConfigName() != null ? presetConfigSetting.getCustomConfigName() : currentConfig.getConfigName();
+				PluginSetting currentConfigSetting = currentConfigurations.getSetting(configName, presetConfigSetting.getKey());
 
 				if (currentConfigSetting != null &&
 					presetConfigSetting.getValue() != null &&
 					!presetConfigSetting.getValue().equals(currentConfigSetting.getValue()))
 				{
-					return false;
+					return new MatchResult(currentConfigurations, configs, presetConfig, presetConfigSetting);
 				}
 			}
 		}
-		return true;
+		return new MatchResult(currentConfigurations, configs, null, null);
 	}
 
 	public PluginConfig getConfig(final PluginConfig searchedConfig)
 	{
 		PluginConfig presetConfig = null;
-		for (PluginConfig config : pluginConfigs)
+		for (PluginConfig config : getPluginConfigs())
 		{
 			if (config.getName().equals(searchedConfig.getName()))
 			{
@@ -165,12 +201,96 @@ public class PluginPreset
 		return presetConfig;
 	}
 
+	/**
+	 * Plugin configs of the preset, loaded from preset folder first if they are not in memory.
+	 */
+	public List<PluginConfig> getPluginConfigs()
+	{
+		if (bodyCache != null)
+		{
+			if (pluginConfigs == null)
+			{
+				pluginConfigs = bodyCache.load(this);
+			}
+			else
+			{
+				bodyCache.accessed(this);
+			}
+		}
+		return pluginConfigs;
+	}
+
+	/**
+	 * Plugin configs of the preset if they are in memory, without loading them.
+	 */
+	List<PluginConfig> getLoadedPluginConfigs()
+	{
+		return pluginConfigs;
+	}
+
+	/**
+	 * Drops plugin configs from memory, they are loaded again when needed.
+	 */
+	void unloadPluginConfigs()
+	{
+		// Last match result is kept only if it was checked with the configs as they are now
+		MatchResult result = lastMatch;
+		if (result != null && result.configsHash != pluginConfigs.hashCode())
+		{
+			lastMatch = null;
+		}
+		pluginConfigs = null;
+	}
+
+	public boolean isPluginConfigsLoaded()
+	{
+		return pluginConfigs != null;
+	}
+
+	public boolean containsCustomSettings()
+	{
+		return getPluginConfigs().stream().anyMatch(PluginConfig::containsCustomSettings);
+	}
+
+	/**
+	 * Deep copy of this preset, unaffected by later changes to this preset.
+	 * Plugin configs that are not loaded are left out of the copy.
+	 */
+	public PluginPreset copy()
+	{
+		PluginPreset copy = new PluginPreset(name);
+		copy.setId(id);
+		copy.setKeybind(keybind);
+		copy.setLocal(local);
+		copy.setLoadOnFocus(loadOnFocus);
+		copy.setAutoUpdated(autoUpdated);
+		copy.setPluginConfigs(pluginConfigs == null ? null : pluginConfigs.stream()
+			.map(PluginConfig::copy)
+			.collect(Collectors.toList()));
+		return copy;
+	}
+
 	public boolean isEmpty()
 	{
-		return pluginConfigs.isEmpty();
+		MatchResult result = lastMatch;
+		if (result != null && !isPluginConfigsLoaded())
+		{
+			return result.empty;
+		}
+		return getPluginConfigs().isEmpty();
 	}
 
 	public boolean canBeDisabled()
+	{
+		MatchResult result = lastMatch;
+		if (result != null && !isPluginConfigsLoaded())
+		{
+			return result.canBeDisabled;
+		}
+		return canBeDisabled(getPluginConfigs());
+	}
+
+	private static boolean canBeDisabled(List<PluginConfig> pluginConfigs)
 	{
 		for (PluginConfig presetConfig : pluginConfigs)
 		{
@@ -181,4 +301,76 @@ public class PluginPreset
 		}
 		return false;
 	}
+
+	/**
+	 * Result of checking the configs of a preset against a snapshot of current configs. A result is reused as such
+	 * for the snapshot it was checked against, a mismatch also for later snapshots in which the plugin or setting
+	 * that did not match still does not match. This way the preset list does not load the configs of every preset
+	 * from preset folder again whenever some config changes.
+	 */
+	private static class MatchResult
+	{
+		private final long generation;
+		private final boolean match;
+
+		/**
+		 * Hash of the configs this was checked with, the result is only valid for configs with the same hash.
+		 */
+		private final int configsHash;
+		private final boolean empty;
+		private final boolean canBeDisabled;
+
+		/**
+		 * Plugin config and setting that did not match, setting is null when the plugin on/off switch did not match.
+		 */
+		private final String pluginName;
+		private final Boolean enabled;
+		private final String customConfigName;
+		private final String key;
+		private final String value;
+
+		MatchResult(ConfigSnapshot snapshot, List<PluginConfig> configs, PluginConfig mismatchedConfig, PluginSetting mismatchedSetting)
+		{
+			generation = snapshot.getGeneration();
+			match = mismatchedConfig == null;
+			configsHash = configs.hashCode();
+			empty = configs.isEmpty();
+			canBeDisabled = PluginPreset.canBeDisabled(configs);
+			pluginName = match ? null : mismatchedConfig.getName();
+			enabled = match ? null : mismatchedConfig.getEnabled();
+			customConfigName = mismatchedSetting != null ? mismatchedSetting.getCustomConfigName() : null;
+			key = mismatchedSetting != null ? mismatchedSetting.getKey() : null;
+			value = mismatchedSetting != null ? mismatchedSetting.getValue() : null;
+		}
+
+		/**
+		 * @return the result for the snapshot, or null if the configs have to be checked again
+		 */
+		Boolean recheck(ConfigSnapshot snapshot)
+		{
+			if (snapshot.getGeneration() == generation)
+			{
+				return match;
+			}
+			if (match)
+			{
+				return null;
+			}
+
+			PluginConfig currentConfig = snapshot.getPluginConfig(pluginName);
+			if (currentConfig == null)
+			{
+				return null;
+			}
+
+			if (key == null)
+			{
+				return !enabled.equals(currentConfig.getEnabled()) ? false : null;
+			}
+
+			String configName = customConfigName != null ? customConfigName : currentConfig.getConfigName();
+			PluginSetting currentSetting = snapshot.getSetting(configName, key);
+			return currentSetting != null && !value.equals(currentSetting.getValue()) ? false : null;
+		}
+	}
 }
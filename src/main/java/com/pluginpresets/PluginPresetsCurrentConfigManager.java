@@ -26,120 +26,100 @@ package com.pluginpresets;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import net.runelite.client.config.Config;
-import net.runelite.client.config.ConfigDescriptor;
 import net.runelite.client.config.ConfigManager;
 import net.runelite.client.config.RuneLiteConfig;
+import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginManager;
 
 /**
- * Helper class that retrieves the user's current configs from the RuneLite client
+ * Helper class that retrieves the user's current configs from the RuneLite client.
+ * Config schemas come from {@link PluginConfigSchemaRegistry}, only the values are read each time.
  */
 @Singleton
 public class PluginPresetsCurrentConfigManager
 {
 	private final PluginManager pluginManager;
 	private final ConfigManager configManager;
-	private final RuneLiteConfig runeLiteConfig;
 	private final CustomSettingsManager customSettingsManager;
+	private final PluginConfigSchemaRegistry schemaRegistry;
 
 	@Inject
-	public PluginPresetsCurrentConfigManager(PluginManager pluginManager, ConfigManager configManager, RuneLiteConfig runeLiteConfig, CustomSettingsManager customSettingsManager)
+	public PluginPresetsCurrentConfigManager(PluginManager pluginManager, ConfigManager configManager, CustomSettingsManager customSettingsManager, PluginConfigSchemaRegistry schemaRegistry)
 	{
 		this.pluginManager = pluginManager;
 		this.configManager = configManager;
-		this.runeLiteConfig = runeLiteConfig;
 		this.customSettingsManager = customSettingsManager;
+		this.schemaRegistry = schemaRegistry;
 	}
 
-	public List<PluginConfig> getCurrentConfigs()
+	/**
+	 * Reads current configs, may be called from any thread.
+	 *
+	 * @param cancelled checked between plugins, reading stops once it is true
+	 * @return current configs, null if reading was cancelled
+	 */
+	public List<PluginConfig> getCurrentConfigs(BooleanSupplier cancelled)
 	{
 		ArrayList<PluginConfig> pluginConfigs = new ArrayList<>();
 
-		pluginManager.getPlugins().forEach(p ->
+		for (PluginConfigSchema schema : schemaRegistry.getPluginSchemas())
 		{
-			String name = p.getName();
-			if (!PluginPresetsPlugin.IGNORED_PLUGINS.contains(name))
+			if (cancelled.getAsBoolean())
 			{
-				Config pluginConfigProxy = pluginManager.getPluginConfigProxy(p);
+				return null;
+			}
 
-				boolean enabled = pluginManager.isPluginEnabled(p);
+			String configName = schema.getConfigName();
+			boolean enabled = pluginManager.isPluginEnabled(schema.getPlugin());
 
-				ArrayList<PluginSetting> pluginSettings = new ArrayList<>();
-				String configName;
+			ArrayList<PluginSetting> pluginSettings = new ArrayList<>();
+			for (PluginConfigSchema.Item item : schema.getItems())
+			{
+				String configuration = configManager.getConfiguration(configName, item.getKey());
+				pluginSettings.add(new PluginSetting(item.getName(), item.getKey(), configuration, null, null));
+			}
 
-				if (pluginConfigProxy == null)
-				{
-					configName = p.getClass().getSimpleName().toLowerCase();
-				}
-				else
-				{
-					ConfigDescriptor configDescriptor = configManager.getConfigDescriptor(pluginConfigProxy);
-					configName = configDescriptor.getGroup().value();
+			List<CustomSetting> configsCustomSettings = customSettingsManager.getCustomConfigsFor(configName);
+			if (!configsCustomSettings.isEmpty())
+			{
+				// Don't add duplicate custom settings: config.key must be unique
+				ArrayList<String> addedCustomSettings = new ArrayList<>();
 
-					configDescriptor.getItems().forEach(i ->
-					{
-						if (!PluginPresetsPlugin.IGNORED_KEYS.contains(i.key()))
-						{
-							String settingName = i.name();
-							if (i.name().equals(""))
-							{
-								settingName = PluginPresetsUtils.splitAndCapitalize(settingName);
-							}
-
-							String configuration = configManager.getConfiguration(configDescriptor.getGroup().value(), i.key());
-							PluginSetting pluginSetting = new PluginSetting(settingName, i.key(),
-								configuration, null, null);
-							pluginSettings.add(pluginSetting);
-						}
-					});
-				}
-
-				List<CustomSetting> configsCustomSettings = customSettingsManager.getCustomConfigsFor(configName);
-				if (!configsCustomSettings.isEmpty())
+				configsCustomSettings.forEach(customSetting ->
 				{
-					// Don't add duplicate custom settings: config.key must be unique
-					ArrayList<String> addedCustomSettings = new ArrayList<>();
-
-					configsCustomSettings.forEach(customSetting ->
+					PluginSetting setting = customSetting.getSetting();
+					String customConfigName = setting.getCustomConfigName();
+					String customConfigKey = setting.getKey();
+					String customConfig = customConfigName + "." + customConfigKey;
+					if (!addedCustomSettings.contains(customConfig))
 					{
-						PluginSetting setting = customSetting.getSetting();
-						String customConfigName = setting.getCustomConfigName();
-						String customConfigKey = setting.getKey();
-						String customConfig = customConfigName + "." + customConfigKey;
-						if (!addedCustomSettings.contains(customConfig))
-						{
-							String value = configManager.getConfiguration(customConfigName, setting.getKey());
-							PluginSetting pluginSetting = new PluginSetting(setting.getName(), setting.getKey(), value, customConfigName, setting.getConfigName());
-							pluginSettings.add(pluginSetting);
-							addedCustomSettings.add(customConfig);
-						}
-					});
-				}
-
-				PluginConfig pluginConfig = new PluginConfig(name, configName, enabled, pluginSettings);
-
-				pluginConfigs.add(pluginConfig);
+						String value = configManager.getConfiguration(customConfigName, setting.getKey());
+						PluginSetting pluginSetting = new PluginSetting(setting.getName(), setting.getKey(), value, customConfigName, setting.getConfigName());
+						pluginSettings.add(pluginSetting);
+						addedCustomSettings.add(customConfig);
+					}
+				});
 			}
-		});
+
+			PluginConfig pluginConfig = new PluginConfig(schema.getName(), configName, enabled, pluginSettings);
+
+			pluginConfigs.add(pluginConfig);
+		}
 
 		// Add RuneLite settings
 		ArrayList<PluginSetting> runelitePluginSettings = new ArrayList<>();
 
-		PluginConfig runeliteConfig = new PluginConfig("RuneLite", RuneLiteConfig.GROUP_NAME, true, runelitePluginSettings);
+		PluginConfigSchema runeLiteSchema = schemaRegistry.getRuneLiteSchema();
+		PluginConfig runeliteConfig = new PluginConfig(runeLiteSchema.getName(), runeLiteSchema.getConfigName(), true, runelitePluginSettings);
 
-		configManager.getConfigDescriptor(runeLiteConfig).getItems().forEach(i ->
+		for (PluginConfigSchema.Item item : runeLiteSchema.getItems())
 		{
-			if (!PluginPresetsPlugin.IGNORED_KEYS.contains(i.key()))
-			{
-				String configuration = configManager.getConfiguration(RuneLiteConfig.GROUP_NAME, i.key());
-				PluginSetting pluginSetting = new PluginSetting(i.name(), i.key(),
-					configuration, null, null);
-				runelitePluginSettings.add(pluginSetting);
-			}
-		});
+			String configuration = configManager.getConfiguration(RuneLiteConfig.GROUP_NAME, item.getKey());
+			runelitePluginSettings.add(new PluginSetting(item.getName(), item.getKey(), configuration, null, null));
+		}
 
 		// Add possible custom RuneLite settings
 		List<CustomSetting> customRuneLiteSettings = customSettingsManager.getCustomConfigsFor(RuneLiteConfig.GROUP_NAME);
@@ -147,7 +127,8 @@ public class PluginPresetsCurrentConfigManager
 		{
 			customRuneLiteSettings.forEach(customSetting ->
 			{
-				PluginSetting setting = customSetting.getSetting();
+				// Setting is the preset's own, current value goes to a copy
+				PluginSetting setting = customSetting.getSetting().copy();
 				String value = configManager.getConfiguration(setting.getCustomConfigName(), setting.getKey());
 				setting.setValue(value);
 
@@ -159,4 +140,18 @@ public class PluginPresetsCurrentConfigManager
 
 		return pluginConfigs;
 	}
+
+	/**
+	 * @param key config key in RuneLite config group
+	 * @return plugin that the key turns on/off, null if the key is something else
+	 */
+	public Plugin getPluginBySwitchKey(String key)
+	{
+		return schemaRegistry.getPluginBySwitchKey(key);
+	}
+
+	public boolean isPluginEnabled(Plugin plugin)
+	{
+		return pluginManager.isPluginEnabled(plugin);
+	}
 }
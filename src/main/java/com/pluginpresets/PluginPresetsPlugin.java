@@ -24,10 +24,7 @@
  */
 package com.pluginpresets;
 
-import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import com.pluginpresets.ui.PluginPresetsPluginPanel;
 import java.awt.Toolkit;
 import java.awt.datatransfer.StringSelection;
@@ -36,9 +33,15 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import javax.inject.Inject;
@@ -46,6 +49,7 @@ import javax.swing.SwingUtilities;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.GameState;
 import net.runelite.api.events.FocusChanged;
 import net.runelite.api.events.GameStateChanged;
@@ -64,6 +68,7 @@ import net.runelite.client.ui.NavigationButton;
 import net.runelite.client.util.ImageUtil;
 import net.runelite.client.util.LinkBrowser;
 
+@Slf4j
 @PluginDescriptor(
 	name = "Plugin Presets",
 	description = "Create presets of your plugin configurations.",
@@ -82,9 +87,10 @@ public class PluginPresetsPlugin extends Plugin
 	static final List<String> IGNORED_KEYS = Stream.of("channel", "oauth", "username", "notesData", "tzhaarStartTime", "tzhaarLastTime", "chatsData", "previousPartyId", "lastWorld", "tab", "position").collect(Collectors.toList());
 	private static final String PLUGIN_NAME = "Plugin Presets";
 	private static final String ICON_FILE = "panel_icon.png";
-	private static final String CONFIG_GROUP = "pluginpresets";
-	private static final String CONFIG_KEY_PRESETS = "presets";
+	static final String CONFIG_GROUP = "pluginpresets";
 	private static final String CONFIG_KEY_AUTO_UPDATE = "autoUpdate";
+	private static final String CONFIG_KEY_FILE_FORMAT = "fileFormat";
+	private static final String CONFIG_KEY_STORAGE_BACKEND = "storageBackend";
 
 	@Getter
 	private final HashMap<Keybind, PluginPreset> keybinds = new HashMap<>();
@@ -106,9 +112,6 @@ public class PluginPresetsPlugin extends Plugin
 	@Inject
 	private ConfigManager configManager;
 
-	@Inject
-	private Gson gson;
-
 	@Inject
 	private KeyManager keyManager;
 
@@ -123,6 +126,12 @@ public class PluginPresetsPlugin extends Plugin
 	@Inject
 	private PluginPresetsStorage presetStorage;
 
+	@Inject
+	private PresetConfigStorage configStorage;
+
+	@Inject
+	private PluginConfigSchemaRegistry schemaRegistry;
+
 	@Getter
 	@Setter
 	private PluginPresetsPresetEditor presetEditor;
@@ -135,6 +144,12 @@ public class PluginPresetsPlugin extends Plugin
 	private Boolean loggedIn = false; // Used to inform that keybinds don't work in login screen
 
 	private Boolean loadingPreset = false;
+
+	/**
+	 * Latest capture of current configs, see {@link #updateCurrentConfigurations()}.
+	 */
+	private CompletableFuture<ConfigSnapshot> pendingCapture;
+
 	private final KeyListener keybindListener = new KeyListener()
 	{
 		@Override
@@ -168,9 +183,13 @@ public class PluginPresetsPlugin extends Plugin
 	protected void startUp()
 	{
 		PluginPresetsStorage.createPresetFolder();
+		schemaRegistry.invalidate(); // Plugins may have changed while this plugin was off
+		presetStorage.setFileFormat(loadPresetFileFormat());
+		presetStorage.setStorageBackend(loadPresetStorageBackend());
 		pluginPanel = new PluginPresetsPluginPanel(this);
 
 		loadPresets();
+		// Presets show as not active until configs are read, then ui is rebuilt and the auto updater catches up
 		updateCurrentConfigurations();
 		setupAutoUpdater();
 		savePresets();
@@ -198,6 +217,8 @@ public class PluginPresetsPlugin extends Plugin
 	@Override
 	protected void shutDown()
 	{
+		// Fold journaled edits into preset files while the presets are still here
+		CompletableFuture<Void> saved = presetStorage.savePresets(pluginPresets);
 		pluginPresets.clear();
 		keybinds.clear();
 		autoUpdater = null;
@@ -205,6 +226,8 @@ public class PluginPresetsPlugin extends Plugin
 		presetStorage.stopWatcher();
 		clientToolbar.removeNavigation(navigationButton);
 		keyManager.unregisterKeyListener(keybindListener);
+		saved.join();
+		presetStorage.close();
 		presetStorage.deletePresetFolderIfEmpty();
 
 		pluginPanel = null;
@@ -215,16 +238,22 @@ public class PluginPresetsPlugin extends Plugin
 	@Subscribe
 	public void onExternalPluginsChanged(ExternalPluginsChanged externalPluginsChanged)
 	{
+		schemaRegistry.invalidate();
 		updateCurrentConfigurations();
-		SwingUtilities.invokeLater(this::rebuildPluginUi);
 	}
 
 	@Subscribe
 	public void onConfigChanged(ConfigChanged configChanged)
 	{
-		if (validConfigChange(configChanged) && !loadingPreset)
+		if (!validConfigChange(configChanged))
+		{
+			return;
+		}
+
+		// Current configs follow changes made by a preset load too, the auto updater reads them once it is done
+		currentConfigurations.update(configChanged.getGroup(), configChanged.getKey(), configChanged.getNewValue());
+		if (!loadingPreset)
 		{
-			updateCurrentConfigurations();
 			if (autoUpdater != null)
 			{
 				autoUpdater.updateAllModified();
@@ -236,9 +265,40 @@ public class PluginPresetsPlugin extends Plugin
 		}
 	}
 
-	public void updateCurrentConfigurations()
+	/**
+	 * Reads all current configs again in the background, single config changes are applied without this.
+	 * Once the configs are read, auto updated preset is updated and ui is rebuilt.
+	 *
+	 * @return future completed once the configs are read
+	 */
+	public CompletableFuture<ConfigSnapshot> updateCurrentConfigurations()
 	{
-		currentConfigurations.update();
+		CompletableFuture<ConfigSnapshot> capture = currentConfigurations.update();
+		synchronized (this)
+		{
+			// Updates that share a capture rebuild ui just once
+			if (capture != pendingCapture)
+			{
+				pendingCapture = capture;
+				capture.thenRun(() -> SwingUtilities.invokeLater(this::onCurrentConfigurationsUpdated));
+			}
+		}
+		return capture;
+	}
+
+	private void onCurrentConfigurationsUpdated()
+	{
+		// Plugin was shut down while configs were read
+		if (pluginPanel == null)
+		{
+			return;
+		}
+
+		if (autoUpdater != null && !loadingPreset)
+		{
+			autoUpdater.updateAllModified();
+		}
+		rebuildPluginUi();
 	}
 
 	private boolean validConfigChange(ConfigChanged configChanged)
@@ -276,19 +336,7 @@ public class PluginPresetsPlugin extends Plugin
 			.filter(preset -> !preset.getLocal())
 			.collect(Collectors.toList());
 
-		syncPresets.forEach(preset -> preset.setLocal(null));
-
-		if (syncPresets.isEmpty())
-		{
-			configManager.unsetConfiguration(CONFIG_GROUP, CONFIG_KEY_PRESETS);
-		}
-		else
-		{
-			final String json = gson.toJson(syncPresets);
-			configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY_PRESETS, json);
-		}
-
-		syncPresets.forEach(preset -> preset.setLocal(false));
+		configStorage.savePresets(syncPresets);
 
 		// If all presets are saved to config, do a refresh since...
 		// ...presetStorage folder watcher does not recognize any file change and doesn't refresh presets.
@@ -298,21 +346,6 @@ public class PluginPresetsPlugin extends Plugin
 		}
 	}
 
-	private void loadConfig(String json)
-	{
-		if (Strings.isNullOrEmpty(json))
-		{
-			return;
-		}
-
-		final List<PluginPreset> configPresetData = gson.fromJson(json, new TypeToken<ArrayList<PluginPreset>>()
-		{
-		}.getType());
-
-		configPresetData.forEach(preset -> preset.setLocal(false));
-		pluginPresets.addAll(configPresetData);
-	}
-
 	public void createPreset(String presetName, boolean empty)
 	{
 		if (presetName.equals(""))
@@ -323,7 +356,9 @@ public class PluginPresetsPlugin extends Plugin
 		PluginPreset preset = presetManager.createPluginPreset(presetName);
 		if (!empty)
 		{
-			preset.setPluginConfigs(currentConfigurations.getPluginConfigs());
+			preset.setPluginConfigs(currentConfigurations.getPluginConfigs().stream()
+				.map(PluginConfig::copy)
+				.collect(Collectors.toList()));
 		}
 
 		pluginPresets.add(preset);
@@ -332,7 +367,7 @@ public class PluginPresetsPlugin extends Plugin
 	}
 
 	/**
-	 * Saves presets to preset folder and RuneLite config.
+	 * Saves presets to preset folder and RuneLite config. Preset folder is written in the background.
 	 * Changes in preset directory or config causes refreshPresets() to run.
 	 */
 	@SneakyThrows
@@ -343,12 +378,121 @@ public class PluginPresetsPlugin extends Plugin
 	}
 
 	/**
-	 * Clears presets from memory, loads them again and then rebuilds ui.
+	 * Saves edits of the given plugin configs of a preset. Edits of local presets are journaled and written
+	 * to preset folder later, other edits save all presets right away.
+	 */
+	public void savePresetEdits(PluginPreset preset, Collection<String> pluginNames)
+	{
+		if (!presetStorage.journalEdits(preset, pluginNames))
+		{
+			savePresets();
+		}
+	}
+
+	/**
+	 * Writes journaled edits to preset folder, unless the plugin was shut down after the fold was scheduled.
+	 */
+	public void foldJournal()
+	{
+		if (pluginPanel != null)
+		{
+			presetStorage.savePresets(pluginPresets);
+		}
+	}
+
+	/**
+	 * Loads presets again in the background, then replaces the presets in memory with them and rebuilds ui.
+	 * Current configs are read again too if custom settings of the presets changed, since they include those.
 	 */
 	public void refreshPresets()
 	{
-		pluginPresets.clear();
-		loadPresets();
+		final long saveCount = presetStorage.getSaveCount();
+		presetStorage.loadPresetsInBackground().whenComplete((storedPresets, error) -> SwingUtilities.invokeLater(() ->
+		{
+			if (!isLoadUpToDate(saveCount, error))
+			{
+				return;
+			}
+
+			pluginPresets.clear();
+			if (addPresets(storedPresets))
+			{
+				updateCurrentConfigurations();
+			}
+			rebuildPluginUi();
+		}));
+	}
+
+	/**
+	 * Reloads only presets of the given preset files in the background, then replaces them in memory by id
+	 * and rebuilds ui.
+	 *
+	 * @param fileNames names of changed files in preset folder
+	 */
+	public void refreshPresets(final Collection<String> fileNames)
+	{
+		final long saveCount = presetStorage.getSaveCount();
+		presetStorage.reloadPresets(fileNames).whenComplete((changes, error) -> SwingUtilities.invokeLater(() ->
+		{
+			if (isLoadUpToDate(saveCount, error))
+			{
+				updatePresets(changes);
+			}
+		}));
+	}
+
+	/**
+	 * Checks if presets loaded in the background can replace the presets in memory, runs on the EDT.
+	 * Presets saved while they were loaded are loaded again, so that the edits are not lost.
+	 */
+	private boolean isLoadUpToDate(final long saveCount, final Throwable error)
+	{
+		// Plugin was shut down while presets were loaded
+		if (pluginPanel == null)
+		{
+			return false;
+		}
+
+		if (error != null)
+		{
+			log.warn(String.format("Failed to load presets, %s", error.getMessage()));
+			return false;
+		}
+
+		if (presetStorage.getSaveCount() != saveCount)
+		{
+			refreshPresets();
+			return false;
+		}
+		return true;
+	}
+
+	private void updatePresets(final PresetFileChanges changes)
+	{
+		if (changes.isEmpty())
+		{
+			return;
+		}
+
+		List<PluginPreset> loadedPresets = changes.getLoadedPresets();
+		Set<Long> changedIds = new HashSet<>(changes.getRemovedPresetIds());
+		loadedPresets.forEach(preset -> changedIds.add(preset.getId()));
+
+		// Config presets are not stored in preset folder
+		List<PluginPreset> removedPresets = pluginPresets.stream()
+			.filter(preset -> preset.getLocal() && changedIds.contains(preset.getId()))
+			.collect(Collectors.toList());
+
+		pluginPresets.removeIf(removedPresets::contains);
+		pluginPresets.addAll(loadedPresets);
+		pluginPresets.sort(Comparator.comparing(PluginPreset::getName)); // Keep presets in order
+
+		if (customSettingsManager.updateCustomSettings(removedPresets, loadedPresets))
+		{
+			updateCurrentConfigurations();
+		}
+		updateKeybinds(removedPresets, loadedPresets);
+		updatePresetEditors(removedPresets, loadedPresets);
 		rebuildPluginUi();
 	}
 
@@ -404,15 +548,28 @@ public class PluginPresetsPlugin extends Plugin
 
 	/**
 	 * Loads presets from preset folder and RuneLite config and adds them to plugin memory.
+	 *
+	 * @return true if custom settings of the presets changed, so current configs need to be read again
 	 */
 	@SneakyThrows
-	public void loadPresets()
+	public boolean loadPresets()
 	{
-		pluginPresets.addAll(presetStorage.loadPresets());
-		loadConfig(configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY_PRESETS));
+		return addPresets(presetStorage.loadPresets());
+	}
+
+	/**
+	 * Adds presets loaded from preset folder and presets in RuneLite config to plugin memory.
+	 *
+	 * @return true if custom settings of the presets changed, so current configs need to be read again
+	 */
+	private boolean addPresets(final List<PluginPreset> storedPresets)
+	{
+		pluginPresets.addAll(storedPresets);
+		pluginPresets.addAll(configStorage.loadPresets());
 		pluginPresets.sort(Comparator.comparing(PluginPreset::getName)); // Keep presets in order
-		customSettingsManager.parseCustomSettings(pluginPresets);
+		boolean customSettingsChanged = customSettingsManager.parseCustomSettings(pluginPresets);
 		cacheKeybinds();
+		return customSettingsChanged;
 	}
 
 	private void cacheKeybinds()
@@ -428,6 +585,87 @@ public class PluginPresetsPlugin extends Plugin
 		});
 	}
 
+	private void updateKeybinds(final List<PluginPreset> removedPresets, final List<PluginPreset> loadedPresets)
+	{
+		List<Keybind> freedKeybinds = new ArrayList<>();
+		Iterator<Map.Entry<Keybind, PluginPreset>> iterator = keybinds.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Map.Entry<Keybind, PluginPreset> entry = iterator.next();
+			if (removedPresets.contains(entry.getValue()))
+			{
+				freedKeybinds.add(entry.getKey());
+				iterator.remove();
+			}
+		}
+
+		loadedPresets.forEach(preset ->
+		{
+			Keybind keybind = preset.getKeybind();
+			if (keybind != null)
+			{
+				keybinds.putIfAbsent(keybind, preset);
+			}
+		});
+
+		// Some other preset could have the same keybind as a removed preset
+		for (Keybind keybind : freedKeybinds)
+		{
+			if (!keybinds.containsKey(keybind))
+			{
+				pluginPresets.stream()
+					.filter(preset -> keybind.equals(preset.getKeybind()))
+					.findFirst()
+					.ifPresent(preset -> keybinds.put(keybind, preset));
+			}
+		}
+	}
+
+	/**
+	 * Points preset editor and auto updater to reloaded versions of their presets.
+	 */
+	private void updatePresetEditors(final List<PluginPreset> removedPresets, final List<PluginPreset> loadedPresets)
+	{
+		if (presetEditor != null && removedPresets.contains(presetEditor.getEditedPreset()))
+		{
+			PluginPreset reloadedPreset = findPreset(presetEditor.getEditedPreset().getId(), loadedPresets);
+			if (reloadedPreset != null)
+			{
+				presetEditor = new PluginPresetsPresetEditor(this, reloadedPreset, currentConfigurations);
+			}
+		}
+
+		if (autoUpdater != null && removedPresets.contains(autoUpdater.getEditedPreset()))
+		{
+			PluginPreset reloadedPreset = findPreset(autoUpdater.getEditedPreset().getId(), loadedPresets);
+			if (reloadedPreset != null)
+			{
+				autoUpdater = new PluginPresetsPresetEditor(this, reloadedPreset, currentConfigurations);
+			}
+		}
+	}
+
+	private static PluginPreset findPreset(final long id, final List<PluginPreset> presets)
+	{
+		for (PluginPreset preset : presets)
+		{
+			if (preset.getId() == id)
+			{
+				return preset;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Presets being edited or auto updated keep their plugin configs in memory.
+	 */
+	public boolean isPresetInUse(final PluginPreset preset)
+	{
+		return (presetEditor != null && presetEditor.getEditedPreset() == preset) ||
+			(autoUpdater != null && autoUpdater.getEditedPreset() == preset);
+	}
+
 	private void setupAutoUpdater()
 	{
 		String configuration = configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY_AUTO_UPDATE);
@@ -489,6 +727,79 @@ public class PluginPresetsPlugin extends Plugin
 
 	}
 
+	private PresetFileFormat loadPresetFileFormat()
+	{
+		String configuration = configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY_FILE_FORMAT);
+		for (PresetFileFormat format : PresetFileFormat.values())
+		{
+			if (format.name().equals(configuration))
+			{
+				return format;
+			}
+		}
+		return PresetFileFormat.JSON;
+	}
+
+	public PresetFileFormat getPresetFileFormat()
+	{
+		return presetStorage.getFileFormat();
+	}
+
+	/**
+	 * Changes format of preset files, all presets in preset folder are rewritten in the new format.
+	 */
+	public void setPresetFileFormat(PresetFileFormat format)
+	{
+		if (format == PresetFileFormat.JSON)
+		{
+			configManager.unsetConfiguration(CONFIG_GROUP, CONFIG_KEY_FILE_FORMAT);
+		}
+		else
+		{
+			configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY_FILE_FORMAT, format.name());
+		}
+
+		presetStorage.setFileFormat(format);
+		savePresets();
+	}
+
+	private PresetStorageBackend loadPresetStorageBackend()
+	{
+		String configuration = configManager.getConfiguration(CONFIG_GROUP, CONFIG_KEY_STORAGE_BACKEND);
+		for (PresetStorageBackend backend : PresetStorageBackend.values())
+		{
+			if (backend.name().equals(configuration))
+			{
+				return backend;
+			}
+		}
+		return PresetStorageBackend.FOLDER;
+	}
+
+	public PresetStorageBackend getPresetStorageBackend()
+	{
+		return presetStorage.getStorageBackend();
+	}
+
+	/**
+	 * Changes where local presets are stored, presets are moved to the new storage right away.
+	 * Moving presets to the pack imports their files to it, moving them to preset folder exports the pack to files.
+	 */
+	public void setPresetStorageBackend(PresetStorageBackend backend)
+	{
+		if (backend == PresetStorageBackend.FOLDER)
+		{
+			configManager.unsetConfiguration(CONFIG_GROUP, CONFIG_KEY_STORAGE_BACKEND);
+		}
+		else
+		{
+			configManager.setConfiguration(CONFIG_GROUP, CONFIG_KEY_STORAGE_BACKEND, backend.name());
+		}
+
+		presetStorage.setStorageBackend(backend);
+		savePresets();
+	}
+
 	public void addAutoUpdateFrom(PluginPreset preset)
 	{
 		preset.setAutoUpdated(true);
@@ -529,10 +840,14 @@ public class PluginPresetsPlugin extends Plugin
 		}
 	}
 
-	public void exportPresetToClipboard(final PluginPreset preset)
+	/**
+	 * Copies preset to clipboard as a share code, or as readable json for older plugin versions and hand editing.
+	 * Import takes both.
+	 */
+	public void exportPresetToClipboard(final PluginPreset preset, final boolean json)
 	{
-		final String json = gson.toJson(preset);
-		final StringSelection contents = new StringSelection(json);
+		final String data = json ? presetStorage.getGson().toJson(preset) : presetStorage.createShareCode(preset);
+		final StringSelection contents = new StringSelection(data);
 		Toolkit.getDefaultToolkit().getSystemClipboard().setContents(contents, null);
 	}
 
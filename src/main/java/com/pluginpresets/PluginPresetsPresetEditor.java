@@ -25,15 +25,17 @@
 package com.pluginpresets;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * Handles updating a preset: enabling/disabling plugin configs and their individual settings.
- * Globally saves changes to the preset if needed.
+ * Globally saves changes to the preset if needed, edits of plugin configs in local presets are journaled.
  */
 @Slf4j
 public class PluginPresetsPresetEditor
@@ -44,6 +46,16 @@ public class PluginPresetsPresetEditor
 	@Getter
 	private final PluginPreset editedPreset;
 
+	/**
+	 * Plugins whose config in the preset changed since the preset was last saved.
+	 */
+	private final Set<String> editedPluginNames = new LinkedHashSet<>();
+
+	/**
+	 * Set when something else than plugin configs changed, which saves the whole preset.
+	 */
+	private boolean headerEdited;
+
 	public PluginPresetsPresetEditor(PluginPresetsPlugin plugin, PluginPreset editedPreset, CurrentConfigurations currentConfigurations)
 	{
 		this.plugin = plugin;
@@ -69,6 +81,7 @@ public class PluginPresetsPresetEditor
 			.collect(Collectors.toList());
 
 		editedPreset.setPluginConfigs(pluginConfigs);
+		editedPluginNames.add(configuration.getName());
 
 		if (!skipUpdate)
 		{
@@ -84,7 +97,8 @@ public class PluginPresetsPresetEditor
 	 */
 	public void addConfigurationToEdited(PluginConfig configuration)
 	{
-		addConfigurationToEdited(configuration, false);
+		// Current configs are not changed through the preset
+		addConfigurationToEdited(configuration.copy(), false);
 	}
 
 	private void addConfigurationToEdited(PluginConfig configuration, Boolean skipUpdate)
@@ -92,6 +106,7 @@ public class PluginPresetsPresetEditor
 		List<PluginConfig> pluginConfigs = editedPreset.getPluginConfigs();
 		pluginConfigs.add(configuration);
 		editedPreset.setPluginConfigs(pluginConfigs);
+		editedPluginNames.add(configuration.getName());
 
 		if (!skipUpdate)
 		{
@@ -115,6 +130,7 @@ public class PluginPresetsPresetEditor
 			{
 				List<PluginSetting> settings = configuration.getSettings().stream().filter((s -> !s.getKey().equals(setting.getKey()))).collect(Collectors.toList());
 				configuration.setSettings(settings);
+				editedPluginNames.add(configuration.getName());
 
 				boolean lastSetting = configuration.getSettings().isEmpty() && configuration.getEnabled() == null;
 				if (lastSetting)
@@ -139,7 +155,7 @@ public class PluginPresetsPresetEditor
 		if (noneMatch)
 		{
 			ArrayList<PluginSetting> settings = new ArrayList<>();
-			settings.add(setting);
+			settings.add(setting.copy());
 			PluginConfig pluginConfig = new PluginConfig(currentConfig.getName(), currentConfig.getConfigName(), null, settings);
 			editedPreset.getPluginConfigs().add(pluginConfig);
 		}
@@ -149,10 +165,11 @@ public class PluginPresetsPresetEditor
 			{
 				if (configuration.getName().equals(currentConfig.getName()))
 				{
-					configuration.getSettings().add(setting);
+					configuration.getSettings().add(setting.copy());
 				}
 			});
 		}
+		editedPluginNames.add(currentConfig.getName());
 		updateEditedPreset();
 	}
 
@@ -189,12 +206,10 @@ public class PluginPresetsPresetEditor
 
 		if (config == null)
 		{
-			for (PluginConfig c : currentConfigurations.getPluginConfigs())
+			PluginConfig c = currentConfigurations.getPluginConfigByConfigName(currentConfig.getConfigName());
+			if (c != null)
 			{
-				if (c.getConfigName().equals(currentConfig.getConfigName()))
-				{
-					config = new PluginConfig(c.getName(), c.getConfigName(), null, new ArrayList<>());
-				}
+				config = new PluginConfig(c.getName(), c.getConfigName(), null, new ArrayList<>());
 			}
 			editedPreset.getPluginConfigs().add(config);
 		}
@@ -212,6 +227,7 @@ public class PluginPresetsPresetEditor
 		if (config.getSetting(setting) == null)
 		{
 			config.getSettings().add(setting);
+			editedPluginNames.add(config.getName());
 			updateEditedPreset();
 			plugin.refreshPresets(); // Must do refresh to reload custom configs
 		}
@@ -242,6 +258,7 @@ public class PluginPresetsPresetEditor
 				}
 			});
 		}
+		editedPluginNames.add(currentConfig.getName());
 		updateEditedPreset();
 	}
 
@@ -258,6 +275,7 @@ public class PluginPresetsPresetEditor
 			if (configurations.getName().equals(currentConfig.getName()))
 			{
 				configurations.setEnabled(null);
+				editedPluginNames.add(configurations.getName());
 				if (configurations.getSettings().isEmpty())
 				{
 					removeConfigurationFromEdited(configurations);
@@ -287,7 +305,7 @@ public class PluginPresetsPresetEditor
 					.collect(Collectors.toList());
 				preset.setPluginConfigs(pluginConfigs);
 			}
-			preset.getPluginConfigs().add(configuration);
+			preset.getPluginConfigs().add(configuration.copy());
 		});
 	}
 
@@ -318,6 +336,7 @@ public class PluginPresetsPresetEditor
 	 */
 	public void updateConfigurations(PluginConfig presetConfig, PluginConfig currentConfig)
 	{
+		currentConfig = currentConfig.copy();
 		removeConfigurationFromEdited(presetConfig, true);
 		List<String> presetConfigKeys = presetConfig.getSettingKeys();
 		List<PluginSetting> currentSettings = currentConfig.getSettings().stream()
@@ -340,14 +359,22 @@ public class PluginPresetsPresetEditor
 	 */
 	public void updateAllModified()
 	{
+		ConfigSnapshot snapshot = currentConfigurations.getSnapshot();
+		if (snapshot == ConfigSnapshot.EMPTY)
+		{
+			// Configs are not read yet, this runs again once they are
+			return;
+		}
+
+		Set<String> modifiedPluginNames = new LinkedHashSet<>();
 		for (PluginConfig presetConfig : editedPreset.getPluginConfigs())
 		{
-			PluginConfig currentConfig = currentConfigurations
-				.getPluginConfigs()
-				.stream()
-				.filter(c -> c.getName().equals(presetConfig.getName()))
-				.findAny()
-				.orElse(null);
+			// Snapshot is not changed, so the config is copied before it is put to the preset
+			PluginConfig currentConfig = snapshot.getPluginConfig(presetConfig.getName());
+			if (currentConfig != null)
+			{
+				currentConfig = currentConfig.copy();
+			}
 
 			removeConfigurationFromEdited(presetConfig, true);
 
@@ -376,10 +403,19 @@ public class PluginPresetsPresetEditor
 				currentConfig.setEnabled(null);
 			}
 
+			if (!currentConfig.equals(presetConfig))
+			{
+				modifiedPluginNames.add(presetConfig.getName());
+			}
 			addConfigurationToEdited(currentConfig, true);
 		}
 
-		updateEditedPreset();
+		// Configs are replaced even when unchanged, only the modified ones need saving
+		editedPluginNames.retainAll(modifiedPluginNames);
+		if (!editedPluginNames.isEmpty())
+		{
+			updateEditedPreset();
+		}
 	}
 
 	/**
@@ -392,7 +428,7 @@ public class PluginPresetsPresetEditor
 		for (PluginConfig pluginConfig : pluginConfigs)
 		{
 			removeConfigurationFromEdited(pluginConfig, true);
-			addConfigurationToEdited(pluginConfig, true);
+			addConfigurationToEdited(pluginConfig.copy(), true);
 		}
 		updateEditedPreset();
 	}
@@ -417,6 +453,7 @@ public class PluginPresetsPresetEditor
 	public void toggleLocal()
 	{
 		editedPreset.setLocal(!editedPreset.getLocal());
+		headerEdited = true;
 		updateEditedPreset();
 	}
 
@@ -436,11 +473,13 @@ public class PluginPresetsPresetEditor
 	public void syncAutoUpdate()
 	{
 		editedPreset.setAutoUpdated(Objects.requireNonNull(getPresetBeingEdited()).getAutoUpdated());
+		headerEdited = true;
 		updateEditedPreset();
 	}
 
 	/**
 	 * Update edited presets plugin configs in pluginPresets and then save.
+	 * Only the edited plugin configs are saved, unless something else was edited too.
 	 */
 	public void updateEditedPreset()
 	{
@@ -451,6 +490,16 @@ public class PluginPresetsPresetEditor
 			preset.setAutoUpdated(editedPreset.getAutoUpdated());
 			preset.setLocal(editedPreset.getLocal());
 		}
-		plugin.savePresets();
+
+		if (preset != null && !headerEdited && !editedPluginNames.isEmpty())
+		{
+			plugin.savePresetEdits(preset, new ArrayList<>(editedPluginNames));
+		}
+		else
+		{
+			plugin.savePresets();
+		}
+		editedPluginNames.clear();
+		headerEdited = false;
 	}
 }
@@ -24,267 +24,1422 @@
  */
 package com.pluginpresets;
 
+import com.google.common.base.Throwables;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
 import com.google.inject.Inject;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
 import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import javax.swing.SwingUtilities;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.config.Keybind;
 
 @Slf4j
 public class PluginPresetsStorage
 {
 	private static final File PRESETS_DIR = PluginPresetsPlugin.PRESETS_DIR;
 
+	/**
+	 * Same charset that FileReader and FileWriter use, so existing preset files keep loading.
+	 */
+	private static final Charset PRESET_FILE_CHARSET = Charset.defaultCharset();
+	private static final String TEMP_FILE_PREFIX = ".";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+	/**
+	 * Manifest of the preset files in preset folder, see {@link PresetFile}.
+	 */
+	private static final String MANIFEST_FILE_NAME = ".manifest.json";
+
+	/**
+	 * Pack that has the presets when they are stored in a single file, see {@link PresetPack}.
+	 */
+	private static final String PACK_FILE_NAME = "presets.pack";
+
+	/**
+	 * Journaled edits are folded into the preset files this long after the first unfolded edit.
+	 */
+	private static final long JOURNAL_FOLD_DELAY_MILLIS = 5000;
+
+	/**
+	 * Preset folder is refreshed once it has had no changes for this long...
+	 */
+	private static final long FOLDER_QUIET_PERIOD_MILLIS = 300;
+	/**
+	 * ...or at the latest this long after the first change, if files keep changing.
+	 */
+	private static final long FOLDER_MAX_DELAY_MILLIS = 2000;
+
+	/**
+	 * Max number of presets from preset folder that have their plugin configs in memory, see {@link PresetBodyCache}.
+	 */
+	private static final int MAX_LOADED_PRESET_BODIES = 100;
+
+	private static final TypeToken<List<PluginConfig>> PLUGIN_CONFIGS_TYPE = new TypeToken<List<PluginConfig>>()
+	{
+	};
+	private static final TypeToken<HashMap<String, Boolean>> LEGACY_ENABLED_PLUGINS_TYPE = new TypeToken<HashMap<String, Boolean>>()
+	{
+	};
+	private static final TypeToken<HashMap<String, HashMap<String, String>>> LEGACY_PLUGIN_SETTINGS_TYPE = new TypeToken<HashMap<String, HashMap<String, String>>>()
+	{
+	};
+	private static final TypeToken<List<PresetFile>> MANIFEST_TYPE = new TypeToken<List<PresetFile>>()
+	{
+	};
+
 	private final List<String> failedFileNames = new ArrayList<>();
+	private final List<String> duplicateFileNames = new ArrayList<>();
+
+	/**
+	 * Preset files by preset id, used to only write presets that changed since they were last loaded or saved.
+	 * Changed while holding the storage lock, read without it when configs of a preset are loaded.
+	 */
+	private final Map<Long, PresetFile> presetFiles = new ConcurrentHashMap<>();
+
+	/**
+	 * Same preset files by file name. Read by the folder watcher to drop events of files that still have
+	 * the content this client wrote or loaded, e.g. events caused by this client's own saves.
+	 */
+	private final Map<String, PresetFile> presetFilesByName = new ConcurrentHashMap<>();
+
+	private String manifestHash;
+
+	private final PresetPack pack = new PresetPack(new File(PRESETS_DIR, PACK_FILE_NAME));
+
+	/**
+	 * Ids of presets that were loaded from the pack or have been written to it since.
+	 */
+	private final Set<Long> packedPresetIds = ConcurrentHashMap.newKeySet();
+
 	private final PluginPresetsPlugin plugin;
 
-	@Inject
-	private Gson gson;
-	
-	private Thread thread;
-	private WatchService watcher;
+	private final PresetJournal journal;
+	private ScheduledFuture<?> journalFold;
+
+	/**
+	 * Set when some preset could not be written, the journal is not folded then.
+	 */
+	private boolean writeFailed;
+
+	/**
+	 * Number of saves and journaled edits so far, presets loaded in the background are out of date if it changes meanwhile.
+	 */
+	private final AtomicLong saveCount = new AtomicLong();
+
+	/**
+	 * Format that presets are written in, files of other formats are rewritten on next save.
+	 */
+	@Getter
+	@Setter
+	private volatile PresetFileFormat fileFormat = PresetFileFormat.JSON;
+
+	/**
+	 * Storage that presets are written to, presets in the other storage are moved on next save.
+	 */
+	@Getter
+	@Setter
+	private volatile PresetStorageBackend storageBackend = PresetStorageBackend.FOLDER;
+
+	/**
+	 * Injected Gson with the preset model adapters registered, see {@link PresetTypeAdapters}.
+	 */
+	@Getter
+	private final Gson gson;
+
+	@Inject
+	private ScheduledExecutorService executor;
+
+	private Thread thread;
+	private WatchService watcher;
+	private PresetFolderDebouncer debouncer;
+
+	private final PresetPersister persister = new PresetPersister(this::writePresets);
+
+	private final PresetBodyCache bodyCache;
+
+	@Inject
+	public PluginPresetsStorage(PluginPresetsPlugin plugin, Gson gson)
+	{
+		this.plugin = plugin;
+		this.gson = PresetTypeAdapters.register(gson);
+		this.bodyCache = new PresetBodyCache(MAX_LOADED_PRESET_BODIES, this::loadPluginConfigs, plugin::isPresetInUse);
+		this.journal = new PresetJournal(PRESETS_DIR, this.gson);
+	}
+
+	private static File createNewPresetFileWithCustomSuffix(final PluginPreset pluginPreset, final int fileNumber, final PresetFileFormat format)
+	{
+		return new File(PRESETS_DIR, String.format("%s (%d)%s", pluginPreset.getName(), fileNumber, format.getExtension()));
+	}
+
+	public static void createPresetFolder()
+	{
+		final boolean presetFolderWasCreated = PRESETS_DIR.mkdirs();
+
+		if (presetFolderWasCreated)
+		{
+			log.info(String.format("Preset folder created at %s", PRESETS_DIR.getAbsolutePath()));
+		}
+	}
+
+	public void deletePresetFolderIfEmpty()
+	{
+		File manifestFile = new File(PRESETS_DIR, MANIFEST_FILE_NAME);
+		if (PRESETS_DIR.exists() && Arrays.stream(Objects.requireNonNull(PRESETS_DIR.listFiles()))
+			.anyMatch(file -> !file.equals(manifestFile) && !PresetPack.isLockFile(file.getName())))
+		{
+			return;
+		}
+
+		if (manifestFile.exists())
+		{
+			deleteFile(manifestFile);
+		}
+		File[] lockFiles = PRESETS_DIR.listFiles((dir, name) -> PresetPack.isLockFile(name));
+		if (lockFiles != null)
+		{
+			Arrays.stream(lockFiles).forEach(this::deleteFile);
+		}
+		deletePresetFolder();
+	}
+
+	private void deletePresetFolder()
+	{
+		boolean folderDeleted = PRESETS_DIR.delete();
+
+		if (!folderDeleted)
+		{
+			log.warn(String.format("Could not delete %s", PRESETS_DIR.getName()));
+		}
+	}
+
+	/**
+	 * Saves local presets to preset folder in the background.
+	 * Presets are copied first, so they can be edited right away. Journaled edits are folded once the presets are written.
+	 *
+	 * @return future completed once the presets are written
+	 */
+	public CompletableFuture<Void> savePresets(final List<PluginPreset> pluginPresets)
+	{
+		saveCount.incrementAndGet();
+
+		// Snapshots have every edit journaled before the mark
+		final long journalMark = journal.mark();
+
+		// Only store local presets
+		List<PluginPreset> presetSnapshots = pluginPresets.stream()
+			.filter(PluginPreset::getLocal)
+			.map(PluginPreset::copy)
+			.collect(Collectors.toList());
+
+		return persister.save(presetSnapshots).thenCompose(ignored -> foldJournal(journalMark));
+	}
+
+	private synchronized CompletableFuture<Void> foldJournal(final long journalMark)
+	{
+		if (writeFailed)
+		{
+			return CompletableFuture.completedFuture(null);
+		}
+		return journal.fold(journalMark);
+	}
+
+	/**
+	 * Journals edits of the given plugin configs of a local preset, instead of writing the whole preset right away.
+	 * Journaled edits are folded into the preset files by the next save, which is scheduled if needed.
+	 *
+	 * The edits are written in the background, if that fails the presets are saved instead.
+	 *
+	 * @return false if the edits are not journaled and the presets need to be saved instead
+	 */
+	public boolean journalEdits(final PluginPreset preset, final Collection<String> pluginNames)
+	{
+		if (!preset.getLocal())
+		{
+			return false;
+		}
+
+		saveCount.incrementAndGet();
+		journal.append(preset, pluginNames).thenAccept(journaled ->
+		{
+			if (!journaled)
+			{
+				SwingUtilities.invokeLater(plugin::foldJournal);
+			}
+		});
+
+		if (journalFold == null || journalFold.isDone())
+		{
+			journalFold = executor.schedule(() -> SwingUtilities.invokeLater(plugin::foldJournal),
+				JOURNAL_FOLD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		return true;
+	}
+
+	public long getSaveCount()
+	{
+		return saveCount.get();
+	}
+
+	/**
+	 * @return future completed once every preset saved so far is written
+	 */
+	public CompletableFuture<Void> flush()
+	{
+		return persister.flush();
+	}
+
+	/**
+	 * Writes presets that changed since they were last loaded or written, runs on the persister thread.
+	 */
+	private synchronized void writePresets(final List<PluginPreset> pluginPresets)
+	{
+		final Map<Long, PluginPreset> localPresets = new LinkedHashMap<>();
+		pluginPresets.forEach(preset -> localPresets.putIfAbsent(preset.getId(), preset));
+		writeFailed = false;
+
+		if (storageBackend == PresetStorageBackend.PACK)
+		{
+			writePresetsToPack(localPresets);
+		}
+		else
+		{
+			writePresetsToFolder(localPresets);
+		}
+		writeManifest();
+	}
+
+	private void writePresetsToFolder(final Map<Long, PluginPreset> localPresets)
+	{
+		final PresetFileFormat format = fileFormat;
+		final Map<Long, byte[]> changedPresets = new LinkedHashMap<>();
+		localPresets.forEach((id, preset) ->
+		{
+			PresetFile presetFile = presetFiles.get(id);
+			if (!preset.isPluginConfigsLoaded())
+			{
+				// Configs are unchanged since they were loaded or written, as they have not been loaded since
+				if (presetFile != null && headerMatches(presetFile, preset, format))
+				{
+					return;
+				}
+
+				List<PluginConfig> pluginConfigs = readStoredPluginConfigs(id);
+				if (pluginConfigs == null)
+				{
+					return;
+				}
+				preset.setPluginConfigs(pluginConfigs);
+			}
+
+			byte[] data = serializePluginPreset(preset, format);
+			if (presetFile == null || !presetFile.getHash().equals(hash(data)) || !fileNameMatches(presetFile, preset, format))
+			{
+				changedPresets.put(id, data);
+			}
+		});
+
+		// Delete old files first so that renamed presets can take each other's file names
+		deleteOutdatedPresetFiles(localPresets, changedPresets, format);
+		changedPresets.forEach((id, data) -> storePluginPresetToJsonFile(localPresets.get(id), data, format));
+
+		// Pack is no longer needed once every preset in it has its own file
+		packedPresetIds.removeIf(id -> presetFiles.containsKey(id) || !localPresets.containsKey(id));
+		if (packedPresetIds.isEmpty() && !pack.isEmpty())
+		{
+			pack.deleteFile();
+		}
+	}
+
+	private void writePresetsToPack(final Map<Long, PluginPreset> localPresets)
+	{
+		if (pack.isChangedOnDisk())
+		{
+			try
+			{
+				pack.load();
+			}
+			catch (IOException e)
+			{
+				log.warn(String.format("Failed to load preset pack, %s", e.getMessage()));
+			}
+		}
+
+		localPresets.forEach((id, preset) ->
+		{
+			PresetFile entry = pack.getEntry(id);
+			if (!preset.isPluginConfigsLoaded())
+			{
+				if (entry != null && headerMatches(entry, preset))
+				{
+					return;
+				}
+
+				List<PluginConfig> pluginConfigs = readStoredPluginConfigs(id);
+				if (pluginConfigs == null)
+				{
+					return;
+				}
+				preset.setPluginConfigs(pluginConfigs);
+			}
+
+			byte[] data = serializePluginPreset(preset, PresetFileFormat.BINARY);
+			String hash = hash(data);
+			if (entry != null && entry.getHash().equals(hash))
+			{
+				packedPresetIds.add(id);
+				return;
+			}
+
+			if (pack.put(createPresetFile(PACK_FILE_NAME, preset, hash, data.length, 0), data))
+			{
+				packedPresetIds.add(id);
+				bodyCache.written(id, preset.getPluginConfigs());
+			}
+			else
+			{
+				writeFailed = true;
+			}
+		});
+
+		pack.getEntries().keySet().stream()
+			.filter(id -> !localPresets.containsKey(id))
+			.forEach(id ->
+			{
+				if (pack.delete(id))
+				{
+					packedPresetIds.remove(id);
+				}
+			});
+
+		// Files of presets that are in the pack now, or that were removed
+		Iterator<Map.Entry<Long, PresetFile>> iterator = presetFiles.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Map.Entry<Long, PresetFile> entry = iterator.next();
+			if (pack.contains(entry.getKey()) || !localPresets.containsKey(entry.getKey()))
+			{
+				deleteFile(new File(PRESETS_DIR, entry.getValue().getFileName()));
+				presetFilesByName.remove(entry.getValue().getFileName());
+				iterator.remove();
+			}
+		}
+		duplicateFileNames.forEach(fileName -> deleteFile(new File(PRESETS_DIR, fileName)));
+		duplicateFileNames.clear();
+
+		pack.compactIfNeeded();
+	}
+
+	/**
+	 * Deletes files of presets that were removed, renamed or moved to RuneLite config,
+	 * and files of presets that were left out on load for having a duplicate id.
+	 */
+	private void deleteOutdatedPresetFiles(final Map<Long, PluginPreset> localPresets, final Map<Long, byte[]> changedPresets,
+		final PresetFileFormat format)
+	{
+		Iterator<Map.Entry<Long, PresetFile>> iterator = presetFiles.entrySet().iterator();
+		while (iterator.hasNext())
+		{
+			Map.Entry<Long, PresetFile> entry = iterator.next();
+			PluginPreset preset = localPresets.get(entry.getKey());
+
+			boolean removed = preset == null;
+			boolean renamed = !removed && changedPresets.containsKey(entry.getKey()) && !fileNameMatches(entry.getValue(), preset, format);
+			if (removed || renamed)
+			{
+				deleteFile(new File(PRESETS_DIR, entry.getValue().getFileName()));
+				presetFilesByName.remove(entry.getValue().getFileName());
+				iterator.remove();
+			}
+		}
+
+		duplicateFileNames.forEach(fileName -> deleteFile(new File(PRESETS_DIR, fileName)));
+		duplicateFileNames.clear();
+	}
+
+	private void deleteFile(File file)
+	{
+		final boolean fileWasDeleted = file.delete();
+		if (!fileWasDeleted)
+		{
+			log.warn(String.format("Could not delete %s", file.getName()));
+		}
+	}
+
+	/**
+	 * Checks if preset file is named after the preset and has the extension of the format, e.g. "name.json" or "name (n).json".
+	 */
+	private static boolean fileNameMatches(final PresetFile presetFile, final PluginPreset pluginPreset, final PresetFileFormat format)
+	{
+		String fileName = presetFile.getFileName();
+		String name = pluginPreset.getName();
+		if (!fileName.startsWith(name))
+		{
+			return false;
+		}
+
+		String suffix = fileName.substring(name.length());
+		return suffix.equals(format.getExtension()) || suffix.matches(" \\(\\d+\\)" + Pattern.quote(format.getExtension()));
+	}
+
+	/**
+	 * Checks if preset file was written with the same header that the preset now has, which includes its file name.
+	 */
+	private static boolean headerMatches(final PresetFile presetFile, final PluginPreset pluginPreset, final PresetFileFormat format)
+	{
+		return headerMatches(presetFile, pluginPreset) && fileNameMatches(presetFile, pluginPreset, format);
+	}
+
+	/**
+	 * Checks if preset was written with the same header that the preset now has.
+	 */
+	private static boolean headerMatches(final PresetFile presetFile, final PluginPreset pluginPreset)
+	{
+		return Objects.equals(presetFile.getName(), pluginPreset.getName()) &&
+			Objects.equals(presetFile.getKeybind(), pluginPreset.getKeybind()) &&
+			Objects.equals(presetFile.getLoadOnFocus(), pluginPreset.getLoadOnFocus()) &&
+			Objects.equals(presetFile.getAutoUpdated(), pluginPreset.getAutoUpdated());
+	}
+
+	private static PresetFile createPresetFile(final String fileName, final PluginPreset pluginPreset, final String hash,
+		final long size, final long lastModified)
+	{
+		return new PresetFile(fileName, pluginPreset.getId(), pluginPreset.getName(), pluginPreset.getKeybind(),
+			pluginPreset.getLoadOnFocus(), pluginPreset.getAutoUpdated(), pluginPreset.containsCustomSettings(),
+			hash, size, lastModified);
+	}
+
+	@SneakyThrows
+	private void storePluginPresetToJsonFile(final PluginPreset pluginPreset, final byte[] data, final PresetFileFormat format)
+	{
+		PresetFile presetFile = presetFiles.get(pluginPreset.getId());
+		File presetJsonFile;
+
+		if (presetFile != null)
+		{
+			// Overwrite the file this preset was loaded from
+			presetJsonFile = new File(PRESETS_DIR, presetFile.getFileName());
+		}
+		else
+		{
+			presetJsonFile = getPresetJsonFileFrom(pluginPreset, format);
+
+			if (presetJsonFile.exists())
+			{
+				presetJsonFile = giveJsonFileCustomSuffixNumber(pluginPreset, presetJsonFile, format);
+			}
+		}
+
+		if (writeDataToFile(data, presetJsonFile))
+		{
+			putPresetFile(createPresetFile(presetJsonFile.getName(), pluginPreset, hash(data), data.length, presetJsonFile.lastModified()));
+
+			// Preset is a snapshot from the persister, nothing changes it after this
+			bodyCache.written(pluginPreset.getId(), pluginPreset.getPluginConfigs());
+		}
+		else
+		{
+			writeFailed = true;
+		}
+	}
+
+	private File getPresetJsonFileFrom(final PluginPreset pluginPreset, final PresetFileFormat format)
+	{
+		return new File(PRESETS_DIR, pluginPreset.getName() + format.getExtension());
+	}
+
+	private File giveJsonFileCustomSuffixNumber(final PluginPreset pluginPreset, File presetJsonFile, final PresetFileFormat format)
+	{
+		int fileNumber = 1;
+		while (presetJsonFile.exists())
+		{
+			presetJsonFile = createNewPresetFileWithCustomSuffix(pluginPreset, fileNumber, format);
+			fileNumber++;
+		}
+		return presetJsonFile;
+	}
+
+	/**
+	 * Serializes preset without changing it, so presets can be serialized on any thread.
+	 */
+	@SneakyThrows
+	private byte[] serializePluginPreset(final PluginPreset pluginPreset, final PresetFileFormat format)
+	{
+		if (format == PresetFileFormat.BINARY)
+		{
+			return PresetBinaryFormat.write(pluginPreset);
+		}
+
+		// Json is streamed straight to the (compressed) bytes, without building it as a string first
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		OutputStream outputStream = format == PresetFileFormat.COMPRESSED_JSON ? new GZIPOutputStream(data) : data;
+		try (Writer writer = new OutputStreamWriter(outputStream, PRESET_FILE_CHARSET))
+		{
+			gson.toJson(pluginPreset, PluginPreset.class, writer);
+		}
+		return data.toByteArray();
+	}
+
+	/**
+	 * Writes data to a temporary file first and then moves it over the file in preset folder,
+	 * so that other clients reading the preset folder never see a partially written file.
+	 */
+	private boolean writeDataToFile(final byte[] data, final File targetFile)
+	{
+		File tempFile = null;
+		try
+		{
+			tempFile = File.createTempFile(TEMP_FILE_PREFIX + targetFile.getName() + ".", TEMP_FILE_SUFFIX, PRESETS_DIR);
+
+			try (FileOutputStream outputStream = new FileOutputStream(tempFile))
+			{
+				outputStream.write(data);
+				outputStream.getFD().sync();
+			}
+
+			moveFile(tempFile, targetFile);
+			return true;
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to write %s, %s", targetFile.getAbsolutePath(), e.getMessage()));
+
+			if (tempFile != null && tempFile.exists())
+			{
+				deleteFile(tempFile);
+			}
+			return false;
+		}
+	}
+
+	static void moveFile(final File source, final File target) throws IOException
+	{
+		try
+		{
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch (AtomicMoveNotSupportedException e)
+		{
+			Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Checks if file is a temporary file of an unfinished preset write, from this or some other client.
+	 */
+	private static boolean isTemporaryFile(final String fileName)
+	{
+		return fileName.startsWith(TEMP_FILE_PREFIX) && fileName.endsWith(TEMP_FILE_SUFFIX);
+	}
+
+	/**
+	 * Checks if file in preset folder can hold a preset, i.e. it is not a temporary file, the manifest, the pack or the journal.
+	 */
+	private static boolean isPresetFileName(final String fileName)
+	{
+		return !isTemporaryFile(fileName) && !fileName.equals(MANIFEST_FILE_NAME) && !fileName.equals(PACK_FILE_NAME)
+			&& !PresetPack.isLockFile(fileName) && !PresetJournal.isJournalFile(fileName);
+	}
+
+	/**
+	 * Writes manifest of the currently known preset files, if it changed since it was last written.
+	 */
+	private void writeManifest()
+	{
+		List<PresetFile> entries = new ArrayList<>(presetFiles.values());
+		entries.sort(Comparator.comparing(PresetFile::getFileName));
+
+		byte[] data = gson.toJson(entries, MANIFEST_TYPE.getType()).getBytes(PRESET_FILE_CHARSET);
+		String hash = hash(data);
+		if (hash.equals(manifestHash) || !PRESETS_DIR.exists())
+		{
+			return;
+		}
+
+		if (writeDataToFile(data, new File(PRESETS_DIR, MANIFEST_FILE_NAME)))
+		{
+			manifestHash = hash;
+		}
+	}
+
+	/**
+	 * @return preset files listed in manifest by file name, or nothing if there is no readable manifest
+	 */
+	private Map<String, PresetFile> readManifest()
+	{
+		File manifestFile = new File(PRESETS_DIR, MANIFEST_FILE_NAME);
+		Map<String, PresetFile> manifest = new HashMap<>();
+		if (!manifestFile.isFile())
+		{
+			return manifest;
+		}
+
+		try
+		{
+			byte[] data = Files.readAllBytes(manifestFile.toPath());
+			manifestHash = hash(data); // Don't rewrite manifest if nothing changed since
+
+			List<PresetFile> entries = gson.fromJson(new String(data, PRESET_FILE_CHARSET), MANIFEST_TYPE.getType());
+			if (entries != null)
+			{
+				entries.stream()
+					.filter(entry -> entry != null && entry.getFileName() != null && entry.getHash() != null)
+					.forEach(entry -> manifest.put(entry.getFileName(), entry));
+			}
+		}
+		catch (IOException | JsonParseException e)
+		{
+			log.warn(String.format("Failed to read preset manifest %s, %s", manifestFile.getAbsolutePath(), e.getMessage()));
+		}
+
+		return manifest;
+	}
+
+	private static String hash(final byte[] data)
+	{
+		return Hashing.murmur3_128().hashBytes(data).toString();
+	}
+
+	/**
+	 * Loads presets right away, on startup when nothing is being written yet.
+	 * Later loads run in the background, see {@link #loadPresetsInBackground()}.
+	 */
+	public List<PluginPreset> loadPresets() throws IOException
+	{
+		flush().join(); // Don't load presets that are about to be overwritten
+		return readPresets();
+	}
+
+	/**
+	 * Loads presets on the persister thread, once presets saved so far are written.
+	 *
+	 * @return future completed with the loaded presets
+	 */
+	public CompletableFuture<List<PluginPreset>> loadPresetsInBackground()
+	{
+		return persister.submit(this::readPresets);
+	}
+
+	private List<PluginPreset> readPresets() throws IOException
+	{
+		List<PluginPreset> pluginPresets = loadStoredPresets();
+		journal.replay(pluginPresets);
+		return pluginPresets;
+	}
+
+	/**
+	 * Loads presets from both storages. When both have a preset, the one in the current storage is used,
+	 * presets that are only in the other storage are moved on next save.
+	 */
+	private synchronized List<PluginPreset> loadStoredPresets() throws IOException
+	{
+		// Nothing loaded yet on startup, so validate the manifest against the folder instead
+		Map<String, PresetFile> knownFiles = presetFilesByName.isEmpty() ? readManifest() : new HashMap<>(presetFilesByName);
+		Map<Long, PresetFile> knownEntries = pack.getEntries();
+		Map<Long, List<PluginConfig>> knownConfigs = bodyCache.clear();
+
+		failedFileNames.clear();
+		duplicateFileNames.clear();
+		presetFiles.clear();
+		presetFilesByName.clear();
+		packedPresetIds.clear();
+
+		List<PluginPreset> pluginPresets;
+		if (storageBackend == PresetStorageBackend.PACK)
+		{
+			pluginPresets = loadPack(knownEntries, knownConfigs);
+			pluginPresets.addAll(loadPresetFolder(knownFiles, knownConfigs));
+		}
+		else
+		{
+			pluginPresets = loadPresetFolder(knownFiles, knownConfigs);
+			pluginPresets.addAll(loadPack(knownEntries, knownConfigs));
+		}
+
+		writeManifest();
+		return pluginPresets;
+	}
+
+	/**
+	 * Loads presets from the pack that are not loaded yet. Presets that have not changed since they were last loaded
+	 * or written are loaded with their known configs, others with just their header unless they have custom settings.
+	 */
+	private List<PluginPreset> loadPack(final Map<Long, PresetFile> knownEntries, final Map<Long, List<PluginConfig>> knownConfigs)
+	{
+		List<PluginPreset> pluginPresetsFromPack = new ArrayList<>();
+		List<PresetFile> entries;
+		try
+		{
+			entries = pack.load();
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to load preset pack, %s", e.getMessage()));
+			return pluginPresetsFromPack;
+		}
+
+		for (PresetFile entry : entries)
+		{
+			long id = entry.getId();
+			if (isLoadedPresetId(id))
+			{
+				continue;
+			}
+
+			PresetFile knownEntry = knownEntries.get(id);
+			List<PluginConfig> pluginConfigs = knownEntry != null && knownEntry.getHash().equals(entry.getHash()) ? knownConfigs.get(id) : null;
+			if (pluginConfigs == null && entry.isCustomSettings())
+			{
+				// Custom settings are needed right away
+				pluginConfigs = readPackedPluginConfigs(id);
+				if (pluginConfigs == null)
+				{
+					continue;
+				}
+			}
+
+			packedPresetIds.add(id);
+			pluginPresetsFromPack.add(createPresetFromHeader(entry, pluginConfigs));
+		}
+
+		return pluginPresetsFromPack;
+	}
 
 	/**
-	 * Informs that preset folder edits were made from this client, and they should be refreshed first.
+	 * Loads presets from preset folder. Files that have not changed since they were last loaded or written
+	 * are loaded with just their header, only new and changed files are parsed.
 	 */
-	private boolean localClientChange = false;
-	private long lastRefreshTime;
+	private List<PluginPreset> loadPresetFolder(final Map<String, PresetFile> knownFiles,
+		final Map<Long, List<PluginConfig>> knownConfigs) throws IOException
+	{
+		// Sorted, so that the same file wins every time when presets have the same id
+		List<File> files = Arrays.stream(Objects.requireNonNull(PRESETS_DIR.listFiles()))
+			.filter(file -> file.isFile() && isPresetFileName(file.getName()))
+			.sorted(Comparator.comparing(File::getName))
+			.collect(Collectors.toList());
 
-	@Inject
-	public PluginPresetsStorage(PluginPresetsPlugin plugin)
+		// Custom settings are needed right away, so those presets are always fully loaded
+		List<File> changedFiles = files.stream()
+			.filter(file ->
+			{
+				PresetFile knownFile = knownFiles.get(file.getName());
+				return knownFile == null || knownFile.isCustomSettings() || !isUnchangedFile(file, knownFile);
+			})
+			.collect(Collectors.toList());
+		Map<File, ParsedPresetFile> parsedFiles = parsePresetFiles(changedFiles);
+
+		List<PluginPreset> pluginPresetsFromFolder = new ArrayList<>();
+
+		for (File file : files)
+		{
+			ParsedPresetFile parsedFile = parsedFiles.get(file);
+
+			PluginPreset pluginPreset;
+			if (parsedFile != null)
+			{
+				pluginPreset = loadParsedPresetFile(parsedFile);
+			}
+			else
+			{
+				PresetFile knownFile = knownFiles.get(file.getName());
+				pluginPreset = loadPresetHeader(knownFile, knownConfigs.get(knownFile.getId()));
+			}
+
+			if (pluginPreset != null)
+			{
+				pluginPresetsFromFolder.add(pluginPreset);
+			}
+		}
+
+		return pluginPresetsFromFolder;
+	}
+
+	/**
+	 * Reloads only the given files from the preset folder on the persister thread, once presets saved so far are written.
+	 *
+	 * @param fileNames names of files in preset folder that were created, modified or deleted
+	 * @return future completed with presets loaded from the files and ids of presets whose file is gone
+	 */
+	public CompletableFuture<PresetFileChanges> reloadPresets(final Collection<String> fileNames)
 	{
-		this.plugin = plugin;
+		return persister.submit(() ->
+		{
+			PresetFileChanges changes = reloadPresetFiles(fileNames);
+			journal.replay(changes.getLoadedPresets());
+			return changes;
+		});
 	}
 
-	private static File createNewPresetFileWithCustomSuffix(final PluginPreset pluginPreset, final int fileNumber)
+	private synchronized PresetFileChanges reloadPresetFiles(final Collection<String> fileNames) throws IOException
 	{
-		return new File(PRESETS_DIR, String.format("%s (%d).json", pluginPreset.getName(), fileNumber));
+		List<PluginPreset> loadedPresets = new ArrayList<>();
+		Set<Long> removedPresetIds = new HashSet<>();
+
+		// Forget all changed files first, so that presets moved between files are not taken as duplicates
+		for (String fileName : fileNames)
+		{
+			failedFileNames.remove(fileName);
+			duplicateFileNames.remove(fileName);
+
+			Long previousId = getPresetIdOf(fileName);
+			if (previousId != null)
+			{
+				removePresetFile(previousId);
+				bodyCache.remove(previousId);
+				removedPresetIds.add(previousId);
+			}
+		}
+
+		List<File> files = fileNames.stream()
+			.filter(PluginPresetsStorage::isPresetFileName)
+			.sorted()
+			.map(fileName -> new File(PRESETS_DIR, fileName))
+			.filter(File::isFile)
+			.collect(Collectors.toList());
+		Map<File, ParsedPresetFile> parsedFiles = parsePresetFiles(files);
+
+		for (File file : files)
+		{
+			PluginPreset pluginPreset = loadParsedPresetFile(parsedFiles.get(file));
+			if (pluginPreset != null)
+			{
+				loadedPresets.add(pluginPreset);
+				removedPresetIds.remove(pluginPreset.getId());
+			}
+		}
+
+		writeManifest();
+		return new PresetFileChanges(loadedPresets, removedPresetIds);
 	}
 
-	public static void createPresetFolder()
+	private Long getPresetIdOf(final String fileName)
 	{
-		final boolean presetFolderWasCreated = PRESETS_DIR.mkdirs();
+		PresetFile presetFile = presetFilesByName.get(fileName);
+		return presetFile != null ? presetFile.getId() : null;
+	}
 
-		if (presetFolderWasCreated)
+	/**
+	 * Loads preset from the header of its file, unless a preset with same id is already loaded from another file.
+	 * Without known plugin configs of the file, configs are loaded from the file when needed.
+	 */
+	private PluginPreset loadPresetHeader(final PresetFile presetFile, final List<PluginConfig> knownConfigs)
+	{
+		if (isLoadedPresetId(presetFile.getId()))
 		{
-			log.info(String.format("Preset folder created at %s", PRESETS_DIR.getAbsolutePath()));
+			duplicateFileNames.add(presetFile.getFileName());
+			return null;
 		}
+
+		PluginPreset pluginPreset = createPresetFromHeader(presetFile, knownConfigs);
+		putPresetFile(presetFile);
+		return pluginPreset;
 	}
 
-	public void deletePresetFolderIfEmpty()
+	private PluginPreset createPresetFromHeader(final PresetFile presetFile, final List<PluginConfig> knownConfigs)
 	{
-		if (PRESETS_DIR.exists() && Objects.requireNonNull(PRESETS_DIR.listFiles()).length > 0)
+		PluginPreset pluginPreset = new PluginPreset(presetFile.getName());
+		pluginPreset.setId(presetFile.getId());
+		pluginPreset.setKeybind(presetFile.getKeybind());
+		pluginPreset.setLoadOnFocus(presetFile.getLoadOnFocus());
+		pluginPreset.setAutoUpdated(presetFile.getAutoUpdated());
+		pluginPreset.setPluginConfigs(knownConfigs);
+		pluginPreset.setBodyCache(bodyCache);
+		if (knownConfigs != null)
 		{
-			return;
+			bodyCache.add(pluginPreset, knownConfigs);
 		}
+		return pluginPreset;
+	}
 
-		deletePresetFolder();
+	/**
+	 * Checks if a preset with the id is already loaded from preset folder or the pack.
+	 */
+	private boolean isLoadedPresetId(final long id)
+	{
+		return presetFiles.containsKey(id) || packedPresetIds.contains(id);
 	}
 
-	private void deletePresetFolder()
+	/**
+	 * Loads plugin configs of a preset that was loaded without them. Runs without the storage lock,
+	 * so that the preset list does not wait for a write to finish.
+	 */
+	private List<PluginConfig> loadPluginConfigs(final PluginPreset pluginPreset)
 	{
-		boolean folderDeleted = PRESETS_DIR.delete();
+		List<PluginConfig> pluginConfigs = readStoredPluginConfigs(pluginPreset.getId());
+		if (pluginConfigs == null)
+		{
+			// File may be in the middle of being renamed by a write
+			synchronized (this)
+			{
+				pluginConfigs = readStoredPluginConfigs(pluginPreset.getId());
+			}
+		}
 
-		if (!folderDeleted)
+		if (pluginConfigs == null)
 		{
-			log.warn(String.format("Could not delete %s", PRESETS_DIR.getName()));
+			// File is gone or changed, the folder watcher refreshes this preset soon
+			log.warn(String.format("Could not load configurations of preset %s", pluginPreset.getName()));
+			return new ArrayList<>();
 		}
+		return pluginConfigs;
 	}
 
-	public void savePresets(final List<PluginPreset> pluginPresets)
+	/**
+	 * Reads plugin configs of preset from the storage it was loaded from.
+	 */
+	private List<PluginConfig> readStoredPluginConfigs(final long id)
 	{
-		localClientChange = true;
-		clearPresetFolder();
-		pluginPresets.forEach(this::storePluginPresetToJsonFile);
+		PresetFile presetFile = presetFiles.get(id);
+		if (presetFile != null)
+		{
+			return readPluginConfigs(presetFile);
+		}
+		return packedPresetIds.contains(id) ? readPackedPluginConfigs(id) : null;
 	}
 
-	private void clearPresetFolder()
+	private List<PluginConfig> readPackedPluginConfigs(final long id)
 	{
-		for (File file : Objects.requireNonNull(PRESETS_DIR.listFiles()))
+		try
 		{
-			// Don't delete invalid files,
-			// those could be e.g. v1 style presets or some syntax failed presets
-			if (!failedFileNames.contains(file.getName()))
+			PluginPreset pluginPreset = pack.read(id);
+			if (pluginPreset != null && pluginPreset.getId() == id)
 			{
-				deleteFile(file);
+				return pluginPreset.getPluginConfigs();
 			}
 		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to load preset %d from preset pack, %s", id, e.getMessage()));
+		}
+		return null;
 	}
 
-	private void deleteFile(File file)
+	/**
+	 * Reads plugin configs from preset file, if it still has the same preset.
+	 */
+	private List<PluginConfig> readPluginConfigs(final PresetFile presetFile)
 	{
-		final boolean fileWasDeleted = file.delete();
-		if (!fileWasDeleted)
+		File file = new File(PRESETS_DIR, presetFile.getFileName());
+		try (InputStream inputStream = new FileInputStream(file))
 		{
-			log.warn(String.format("Could not delete %s", file.getName()));
+			PluginPreset pluginPreset = parsePluginPresetFrom(file, inputStream);
+			if (pluginPreset != null && pluginPreset.getId() == presetFile.getId())
+			{
+				return pluginPreset.getPluginConfigs();
+			}
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to load preset from %s, %s", file.getAbsolutePath(), e.getMessage()));
 		}
+		return null;
 	}
 
-	@SneakyThrows
-	private void storePluginPresetToJsonFile(final PluginPreset pluginPreset)
+	/**
+	 * Parses preset files in parallel on a pool that only lives for this load, a single file is parsed right here.
+	 *
+	 * @return parsed files by file
+	 */
+	private Map<File, ParsedPresetFile> parsePresetFiles(final List<File> files) throws IOException
 	{
-		// Only store local presets
-		if (!pluginPreset.getLocal())
+		if (files.size() < 2)
 		{
-			return;
+			return files.stream()
+				.map(this::parsePresetFile)
+				.collect(Collectors.toMap(parsedFile -> parsedFile.file, parsedFile -> parsedFile));
+		}
+
+		ForkJoinPool loaderPool = new ForkJoinPool(Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+		try
+		{
+			// Parallel stream runs in the pool it is started from
+			return loaderPool.submit(() -> files.parallelStream()
+				.map(this::parsePresetFile)
+				.collect(Collectors.toMap(parsedFile -> parsedFile.file, parsedFile -> parsedFile)))
+				.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Loading presets was interrupted");
+		}
+		catch (ExecutionException e)
+		{
+			Throwables.throwIfUnchecked(e.getCause());
+			throw new IOException(e.getCause());
+		}
+		finally
+		{
+			loaderPool.shutdown();
+		}
+	}
+
+	/**
+	 * Parses preset from file. Runs on the loader pool, so this must not touch the loaded preset files.
+	 */
+	private ParsedPresetFile parsePresetFile(final File file)
+	{
+		PluginPreset pluginPreset = null;
+		String hash = null;
+
+		// Read before the contents, so that a write during loading is never taken as already loaded
+		long size = file.length();
+		long lastModified = file.lastModified();
+
+		try (HashingInputStream inputStream = new HashingInputStream(Hashing.murmur3_128(), new FileInputStream(file)))
+		{
+			pluginPreset = parsePluginPresetFrom(file, inputStream);
+			ByteStreams.exhaust(inputStream); // Hash the whole file, not just the parsed json
+			hash = inputStream.hash().toString();
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to load preset from %s, %s", file.getAbsolutePath(), e.getMessage()));
 		}
 
-		File presetJsonFile = getPresetJsonFileFrom(pluginPreset);
+		return new ParsedPresetFile(file, pluginPreset, hash, size, lastModified);
+	}
+
+	/**
+	 * Loads preset parsed from file, unless the file is broken or a preset with same id is already loaded from another file.
+	 */
+	private PluginPreset loadParsedPresetFile(final ParsedPresetFile parsedFile)
+	{
+		File file = parsedFile.file;
+		PluginPreset pluginPreset = parsedFile.pluginPreset;
+
+		if (pluginPreset == null)
+		{
+			failedFileNames.add(file.getName());
+			return null;
+		}
 
-		if (presetJsonFile.exists())
+		long id = pluginPreset.getId();
+		if (isLoadedPresetId(id))
 		{
-			presetJsonFile = giveJsonFileCustomSuffixNumber(pluginPreset, presetJsonFile);
+			duplicateFileNames.add(file.getName());
+			return null;
 		}
 
-		writePresetDataToJsonFile(pluginPreset, presetJsonFile);
+		pluginPreset.setLocal(true);
+		putPresetFile(createPresetFile(file.getName(), pluginPreset, parsedFile.hash, parsedFile.size, parsedFile.lastModified));
+
+		pluginPreset.setBodyCache(bodyCache);
+		bodyCache.add(pluginPreset, pluginPreset.getPluginConfigs());
+		return pluginPreset;
 	}
 
-	private File getPresetJsonFileFrom(final PluginPreset pluginPreset)
+	private void putPresetFile(final PresetFile presetFile)
 	{
-		return new File(PRESETS_DIR, String.format("%s.json", pluginPreset.getName()));
+		PresetFile previousFile = presetFiles.put(presetFile.getId(), presetFile);
+		if (previousFile != null)
+		{
+			presetFilesByName.remove(previousFile.getFileName(), previousFile);
+		}
+		presetFilesByName.put(presetFile.getFileName(), presetFile);
 	}
 
-	private File giveJsonFileCustomSuffixNumber(final PluginPreset pluginPreset, File presetJsonFile)
+	private void removePresetFile(final long id)
 	{
-		int fileNumber = 1;
-		while (presetJsonFile.exists())
+		PresetFile presetFile = presetFiles.remove(id);
+		if (presetFile != null)
 		{
-			presetJsonFile = createNewPresetFileWithCustomSuffix(pluginPreset, fileNumber);
-			fileNumber++;
+			presetFilesByName.remove(presetFile.getFileName(), presetFile);
 		}
-		return presetJsonFile;
 	}
 
-	private void writePresetDataToJsonFile(final PluginPreset pluginPreset, final File presetJsonFile)
+	/**
+	 * Checks if file still has the contents this client last wrote or loaded, or if a file this client never loaded is gone.
+	 * Changes to these files have nothing to refresh.
+	 */
+	private boolean isUnchangedFile(final String fileName)
 	{
-		pluginPreset.setLocal(null); // Don't store status value to file
+		File file = new File(PRESETS_DIR, fileName);
+		PresetFile presetFile = presetFilesByName.get(fileName);
+
+		if (presetFile == null || !file.exists())
+		{
+			return presetFile == null && !file.exists();
+		}
+
+		return isUnchangedFile(file, presetFile);
+	}
 
-		try (Writer writer = new FileWriter(presetJsonFile))
+	/**
+	 * Checks if file still has the contents it had as the given preset file.
+	 */
+	private static boolean isUnchangedFile(final File file, final PresetFile presetFile)
+	{
+		// Coarse timestamps can't tell apart two writes made within the same second
+		long lastModified = file.lastModified();
+		boolean preciseTimestamp = lastModified % 1000 != 0;
+		if (preciseTimestamp && lastModified == presetFile.getLastModified() && file.length() == presetFile.getSize())
 		{
-			gson.toJson(pluginPreset, writer);
+			return true;
 		}
-		catch (Exception e)
+
+		try (HashingInputStream inputStream = new HashingInputStream(Hashing.murmur3_128(), new FileInputStream(file)))
 		{
-			// Ignore
+			ByteStreams.exhaust(inputStream);
+			return inputStream.hash().toString().equals(presetFile.getHash());
 		}
-		finally
+		catch (IOException e)
 		{
-			pluginPreset.setLocal(true);
+			return false;
 		}
-
 	}
 
-	public List<PluginPreset> loadPresets() throws IOException
+	/**
+	 * Parses preset from file of any format, the format and compression are detected from the start of the file.
+	 */
+	private PluginPreset parsePluginPresetFrom(final File file, final InputStream inputStream) throws IOException
 	{
-		failedFileNames.clear();
+		// Input stream is closed by the caller once the whole file has been hashed
+		BufferedInputStream bufferedStream = new BufferedInputStream(inputStream);
 
-		ArrayList<Long> loadedIds = new ArrayList<>();
-		List<PluginPreset> pluginPresetsFromFolder = new ArrayList<>();
+		byte[] fileStart = new byte[PresetBinaryFormat.getMagicLength()];
+		bufferedStream.mark(fileStart.length);
+		int length = ByteStreams.read(bufferedStream, fileStart, 0, fileStart.length);
+		bufferedStream.reset();
 
-		for (File file : Objects.requireNonNull(PRESETS_DIR.listFiles()))
+		if (isCompressed(fileStart, length))
 		{
-			if (file.isFile())
+			// Only ends the inflater, the caller still has to read the rest of the file for the hash
+			try (GZIPInputStream gzipStream = new GZIPInputStream(bufferedStream)
 			{
-				PluginPreset pluginPreset = parsePluginPresetFrom(file);
-
-				if (pluginPreset != null)
+				@Override
+				public void close()
 				{
-					long id = pluginPreset.getId();
-					if (!(loadedIds.contains(id)))
-					{
-						pluginPreset.setLocal(true);
-						pluginPresetsFromFolder.add(pluginPreset);
-						loadedIds.add(id);
-					}
-				}
-				else
-				{
-					failedFileNames.add(file.getName());
+					inf.end();
 				}
+			})
+			{
+				return parsePluginPresetFrom(file, gzipStream);
 			}
 		}
 
-		return pluginPresetsFromFolder;
+		if (PresetBinaryFormat.isBinary(Arrays.copyOf(fileStart, length)))
+		{
+			return parseBinaryPluginPresetFrom(file, bufferedStream);
+		}
+		return parseJsonPluginPresetFrom(file, bufferedStream);
 	}
 
-	private PluginPreset parsePluginPresetFrom(final File file) throws IOException
+	private static boolean isCompressed(final byte[] fileStart, final int length)
 	{
-		PluginPreset newPreset;
+		return length >= 2 && ((fileStart[0] & 0xFF) | (fileStart[1] & 0xFF) << 8) == GZIPInputStream.GZIP_MAGIC;
+	}
 
-		try (Reader reader = new FileReader(file))
+	private PluginPreset parseBinaryPluginPresetFrom(final File file, final InputStream inputStream)
+	{
+		try
 		{
-			newPreset = gson.fromJson(reader, new TypeToken<PluginPreset>()
+			PluginPreset pluginPreset = PresetBinaryFormat.read(inputStream);
+			if (pluginPreset.getName() != null && pluginPreset.getPluginConfigs() != null)
 			{
-			}.getType());
+				return pluginPreset;
+			}
 		}
-		catch (JsonSyntaxException | FileNotFoundException e)
+		catch (IOException e)
 		{
 			log.warn(String.format("Failed to load preset from %s, %s", file.getAbsolutePath(), e.getMessage()));
 			return null;
 		}
 
-		if (newPreset.getName() == null || newPreset.getPluginConfigs() == null)
-		{
-			// Something wrong with the parsed preset
-			// Check if file contains old styled preset
-			LegacyPluginPreset legacyPluginPreset = null;
+		log.warn(String.format("Plugin Preset data is malformed in file and could not be loaded %s", file.getAbsolutePath()));
+		return null;
+	}
 
-			try (Reader reader = new FileReader(file))
-			{
-				legacyPluginPreset = gson.fromJson(reader, new TypeToken<LegacyPluginPreset>()
-				{
-				}.getType());
-			}
-			catch (JsonSyntaxException e)
-			{
-				// Ignore
-			}
+	/**
+	 * Parses preset from json file in a single pass. The format is picked from the top level fields,
+	 * legacy styled presets are converted to the current format.
+	 */
+	private PluginPreset parseJsonPluginPresetFrom(final File file, final InputStream inputStream) throws IOException
+	{
+		long id = 0;
+		String name = null;
+		Keybind keybind = null;
+		Boolean loadOnFocus = null;
+		Boolean autoUpdated = null;
+		List<PluginConfig> pluginConfigs = null;
+		Boolean selected = null;
+		HashMap<String, Boolean> enabledPlugins = null;
+		HashMap<String, HashMap<String, String>> pluginSettings = null;
+
+		JsonReader jsonReader = new JsonReader(new InputStreamReader(inputStream, PRESET_FILE_CHARSET));
+		jsonReader.setLenient(true);
 
-			if (legacyPluginPreset != null)
+		try
+		{
+			if (jsonReader.peek() != JsonToken.BEGIN_OBJECT)
 			{
-				log.info(String.format("Converting legacy styled preset to new plugin preset format, file: %s, preset: %s", file.getAbsolutePath(), legacyPluginPreset));
-				newPreset = LegacyPluginPreset.convert(legacyPluginPreset, plugin.getCurrentConfigurations());
-				return newPreset;
+				log.warn(String.format("Plugin Preset data is malformed in file and could not be loaded %s", file.getAbsolutePath()));
+				return null;
 			}
-			else
+
+			jsonReader.beginObject();
+			while (jsonReader.hasNext())
 			{
-				log.warn(String.format("Plugin Preset data is malformed in file and could not be loaded %s, %s", file.getAbsolutePath(), newPreset));
+				switch (jsonReader.nextName())
+				{
+					case "id":
+						Long parsedId = gson.getAdapter(Long.class).read(jsonReader);
+						id = parsedId != null ? parsedId : 0;
+						break;
+					case "name":
+						name = gson.getAdapter(String.class).read(jsonReader);
+						break;
+					case "keybind":
+						keybind = gson.getAdapter(Keybind.class).read(jsonReader);
+						break;
+					case "loadOnFocus":
+						loadOnFocus = gson.getAdapter(Boolean.class).read(jsonReader);
+						break;
+					case "autoUpdated":
+						autoUpdated = gson.getAdapter(Boolean.class).read(jsonReader);
+						break;
+					case "pluginConfigs":
+						pluginConfigs = gson.getAdapter(PLUGIN_CONFIGS_TYPE).read(jsonReader);
+						break;
+					case "selected":
+						selected = gson.getAdapter(Boolean.class).read(jsonReader);
+						break;
+					case "enabledPlugins":
+						enabledPlugins = gson.getAdapter(LEGACY_ENABLED_PLUGINS_TYPE).read(jsonReader);
+						break;
+					case "pluginSettings":
+						pluginSettings = gson.getAdapter(LEGACY_PLUGIN_SETTINGS_TYPE).read(jsonReader);
+						break;
+					default:
+						jsonReader.skipValue();
+				}
 			}
+			jsonReader.endObject();
+		}
+		catch (EOFException | MalformedJsonException | IllegalStateException | JsonParseException e)
+		{
+			log.warn(String.format("Failed to load preset from %s, %s", file.getAbsolutePath(), e.getMessage()));
 			return null;
 		}
 
-		return newPreset;
+		if (name != null && pluginConfigs != null)
+		{
+			PluginPreset newPreset = new PluginPreset(name);
+			newPreset.setId(id);
+			newPreset.setKeybind(keybind);
+			newPreset.setLoadOnFocus(loadOnFocus);
+			newPreset.setAutoUpdated(autoUpdated);
+			newPreset.setPluginConfigs(pluginConfigs);
+			return newPreset;
+		}
+
+		// Something wrong with the parsed preset
+		// Check if file contains old styled preset
+		if (name != null && enabledPlugins != null)
+		{
+			return convertLegacyPluginPreset(file, id, name, selected, enabledPlugins,
+				pluginSettings != null ? pluginSettings : new HashMap<>());
+		}
+
+		log.warn(String.format("Plugin Preset data is malformed in file and could not be loaded %s", file.getAbsolutePath()));
+		return null;
 	}
 
+	@SuppressWarnings("deprecation") // Legacy format is only read here, to convert it to the current one
+	private PluginPreset convertLegacyPluginPreset(final File file, final long id, final String name, final Boolean selected,
+		final HashMap<String, Boolean> enabledPlugins, final HashMap<String, HashMap<String, String>> pluginSettings)
+	{
+		LegacyPluginPreset legacyPluginPreset = new LegacyPluginPreset(id, name, selected, enabledPlugins, pluginSettings);
+		log.info(String.format("Converting legacy styled preset to new plugin preset format, file: %s, preset: %s", file.getAbsolutePath(), legacyPluginPreset));
+		return LegacyPluginPreset.convert(legacyPluginPreset, plugin.getCurrentConfigurations());
+	}
+
+	/**
+	 * Parses preset from share code or json, share codes are checked before any json is parsed.
+	 */
 	public PluginPreset parsePluginPresetFrom(String string)
 	{
 		PluginPreset newPreset;
 
-		try
+		if (PresetShareCode.isShareCode(string))
 		{
-			newPreset = gson.fromJson(string, new TypeToken<PluginPreset>()
+			try (Reader reader = new InputStreamReader(PresetShareCode.read(string), PRESET_FILE_CHARSET))
+			{
+				newPreset = gson.fromJson(reader, PluginPreset.class);
+			}
+			catch (IOException | JsonParseException e)
 			{
-			}.getType());
+				log.warn(String.format("Could not read preset share code: %s", e.getMessage()));
+				return null;
+			}
 		}
-		catch (JsonSyntaxException e)
+		else
 		{
-			return null;
+			try
+			{
+				newPreset = gson.fromJson(string, PluginPreset.class);
+			}
+			catch (JsonSyntaxException e)
+			{
+				return null;
+			}
 		}
 
 		if (newPreset == null || newPreset.getName() == null || newPreset.getPluginConfigs() == null)
@@ -295,11 +1450,18 @@ public class PluginPresetsStorage
 		return newPreset;
 	}
 
+	public String createShareCode(final PluginPreset preset)
+	{
+		return PresetShareCode.write(gson, preset);
+	}
+
 	/**
 	 * Starts thread that runs method that watches preset folder for file changes that do preset refresh.
 	 */
 	public void watchFolderChanges()
 	{
+		debouncer = new PresetFolderDebouncer(executor, FOLDER_QUIET_PERIOD_MILLIS, FOLDER_MAX_DELAY_MILLIS, this::refreshChangedPresets);
+
 		thread = new Thread(this::watchFolder);
 		thread.setName("PresetFolderWatcher");
 		thread.start();
@@ -307,6 +1469,8 @@ public class PluginPresetsStorage
 
 	public void stopWatcher()
 	{
+		debouncer.cancel();
+
 		thread.interrupt();
 		try
 		{
@@ -320,6 +1484,20 @@ public class PluginPresetsStorage
 		thread = null;
 	}
 
+	/**
+	 * Cancels a scheduled journal fold and releases the journal, journaled edits are replayed on next load
+	 * if they were not saved.
+	 */
+	public void close()
+	{
+		if (journalFold != null)
+		{
+			journalFold.cancel(false);
+			journalFold = null;
+		}
+		journal.close();
+	}
+
 	public void watchFolder()
 	{
 		Path presetDir = PRESETS_DIR.toPath();
@@ -357,30 +1535,26 @@ public class PluginPresetsStorage
 				return;
 			}
 
-			if (!wk.pollEvents().isEmpty())
+			Set<String> fileNames = new HashSet<>();
+			boolean overflow = false;
+			for (WatchEvent<?> event : wk.pollEvents())
 			{
-				// Run refreshPresets only once
-				boolean validMillisDiff = (System.currentTimeMillis() - lastRefreshTime) > 100;
-				if (validMillisDiff)
+				Object context = event.context();
+				if (!(context instanceof Path))
 				{
-					// Offset other clients so that file edits don't collapse
-					if (!localClientChange)
-					{
-						try
-						{
-							Thread.sleep(300);
-						}
-						catch (InterruptedException e)
-						{
-							Thread.currentThread().interrupt();
-							return;
-						}
-					}
-
-					lastRefreshTime = System.currentTimeMillis();
-					SwingUtilities.invokeLater(plugin::refreshPresets); // Refresh
-					localClientChange = false;
+					// Some events were lost, so the whole folder has to be refreshed
+					overflow = true;
 				}
+				else if (isPresetFileName(context.toString()) || context.toString().equals(PACK_FILE_NAME))
+				{
+					// Writes to temporary files are followed by a move, which is the event that matters
+					fileNames.add(context.toString());
+				}
+			}
+
+			if (overflow || !fileNames.isEmpty())
+			{
+				debouncer.addChanges(fileNames, overflow);
 			}
 			boolean valid = wk.reset();
 			if (!valid)
@@ -389,4 +1563,42 @@ public class PluginPresetsStorage
 			}
 		}
 	}
+
+	private void refreshChangedPresets(final Set<String> fileNames, final boolean overflow)
+	{
+		// Pack is only reloaded as a whole, when some other client has changed it
+		final boolean fullRefresh = fileNames.remove(PACK_FILE_NAME) && pack.isChangedOnDisk() || overflow;
+
+		// Most events are caused by this client's own saves
+		fileNames.removeIf(this::isUnchangedFile);
+		if (fileNames.isEmpty() && !fullRefresh)
+		{
+			return;
+		}
+
+		SwingUtilities.invokeLater(() ->
+		{
+			if (fullRefresh)
+			{
+				plugin.refreshPresets();
+			}
+			else
+			{
+				plugin.refreshPresets(fileNames);
+			}
+		});
+	}
+
+	/**
+	 * Preset parsed from a file, with the size and modification time the file had before it was read.
+	 */
+	@AllArgsConstructor
+	private static class ParsedPresetFile
+	{
+		private final File file;
+		private final PluginPreset pluginPreset;
+		private final String hash;
+		private final long size;
+		private final long lastModified;
+	}
 }
\ No newline at end of file
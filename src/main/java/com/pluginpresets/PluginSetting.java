@@ -46,4 +46,9 @@ public class PluginSetting
 	private String value;
 	private String customConfigName;
 	private String configName;
+
+	public PluginSetting copy()
+	{
+		return new PluginSetting(name, key, value, customConfigName, configName);
+	}
 }
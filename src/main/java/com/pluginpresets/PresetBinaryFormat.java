@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import net.runelite.client.config.Keybind;
+
+/**
+ * Compact binary preset file format. Every string is stored once in a string table at the start of the file
+ * and referred to by its index, numbers and lengths are varints and nullable booleans are stored as a single byte.
+ * <p>
+ * Holds exactly what the json format holds, so presets convert between the two formats without loss.
+ */
+public class PresetBinaryFormat
+{
+	/**
+	 * Start of every binary preset file, "PPB" and format version.
+	 */
+	private static final byte[] MAGIC = {'P', 'P', 'B', 1};
+
+	/**
+	 * Limit for string table and list sizes, so that a broken file fails fast instead of allocating huge arrays.
+	 */
+	private static final int MAX_COUNT = 1 << 20;
+
+	private static final int NULL = 0;
+	private static final int FALSE = 1;
+	private static final int TRUE = 2;
+
+	public static int getMagicLength()
+	{
+		return MAGIC.length;
+	}
+
+	/**
+	 * Checks if file starts like a binary preset file.
+	 */
+	public static boolean isBinary(final byte[] fileStart)
+	{
+		return fileStart.length >= MAGIC.length && Arrays.equals(Arrays.copyOf(fileStart, MAGIC.length), MAGIC);
+	}
+
+	public static byte[] write(final PluginPreset preset)
+	{
+		// Strings are written first, so they are collected in the order they are written in
+		Map<String, Integer> strings = new LinkedHashMap<>();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+		writeLong(body, preset.getId());
+		writeString(body, strings, preset.getName());
+		Keybind keybind = preset.getKeybind();
+		body.write(keybind == null ? FALSE : TRUE);
+		if (keybind != null)
+		{
+			writeLong(body, keybind.getKeyCode());
+			writeLong(body, keybind.getModifiers());
+		}
+		writeBoolean(body, null); // Storage status is not stored, like in json
+		writeBoolean(body, preset.getLoadOnFocus());
+		writeBoolean(body, preset.getAutoUpdated());
+
+		List<PluginConfig> pluginConfigs = preset.getPluginConfigs();
+		writeCount(body, pluginConfigs);
+		if (pluginConfigs != null)
+		{
+			for (PluginConfig config : pluginConfigs)
+			{
+				writeString(body, strings, config.getName());
+				writeString(body, strings, config.getConfigName());
+				writeBoolean(body, config.getEnabled());
+
+				List<PluginSetting> settings = config.getSettings();
+				writeCount(body, settings);
+				if (settings != null)
+				{
+					for (PluginSetting setting : settings)
+					{
+						writeString(body, strings, setting.getName());
+						writeString(body, strings, setting.getKey());
+						writeString(body, strings, setting.getValue());
+						writeString(body, strings, setting.getCustomConfigName());
+						writeString(body, strings, setting.getConfigName());
+					}
+				}
+			}
+		}
+
+		ByteArrayOutputStream file = new ByteArrayOutputStream(body.size() + 16 * strings.size());
+		file.write(MAGIC, 0, MAGIC.length);
+		writeVarint(file, strings.size());
+		for (String string : strings.keySet())
+		{
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			writeVarint(file, bytes.length);
+			file.write(bytes, 0, bytes.length);
+		}
+		file.write(body.toByteArray(), 0, body.size());
+		return file.toByteArray();
+	}
+
+	/**
+	 * Reads preset from binary preset file, the magic included.
+	 *
+	 * @throws IOException if the file is not a valid binary preset file
+	 */
+	public static PluginPreset read(final InputStream inputStream) throws IOException
+	{
+		// Files are small enough to be read at once, which is a lot faster than reading them byte by byte
+		return read(ByteBuffer.wrap(ByteStreams.toByteArray(inputStream)));
+	}
+
+	/**
+	 * Reads preset from buffer that has a binary preset file from its position to its limit, e.g. a record of the preset pack.
+	 *
+	 * @throws IOException if the buffer does not have a valid binary preset file
+	 */
+	public static PluginPreset read(final ByteBuffer buffer) throws IOException
+	{
+		try
+		{
+			return readPreset(buffer);
+		}
+		catch (BufferUnderflowException | IndexOutOfBoundsException e)
+		{
+			throw new EOFException("Binary preset file ended unexpectedly");
+		}
+		catch (RuntimeException e)
+		{
+			// Broken file must only fail loading of this preset
+			throw new IOException("Invalid binary preset file", e);
+		}
+	}
+
+	private static PluginPreset readPreset(final ByteBuffer in) throws IOException
+	{
+		byte[] magic = new byte[MAGIC.length];
+		in.get(magic);
+		if (!Arrays.equals(magic, MAGIC))
+		{
+			throw new IOException("Not a binary preset file");
+		}
+
+		int stringCount = readCount(in);
+		String[] strings = new String[stringCount];
+		for (int i = 0; i < stringCount; i++)
+		{
+			int length = readCount(in);
+			if (length > in.remaining())
+			{
+				throw new EOFException("Binary preset file ended unexpectedly");
+			}
+			if (in.hasArray())
+			{
+				strings[i] = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+				in.position(in.position() + length);
+			}
+			else
+			{
+				byte[] bytes = new byte[length];
+				in.get(bytes);
+				strings[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+		}
+
+		// Fields missing from the file are left empty, like the json adapters leave them
+		PluginPreset preset = new PluginPreset(null);
+		preset.setId(readLong(in));
+		preset.setName(readString(in, strings));
+		if (readBoolean(in) == Boolean.TRUE)
+		{
+			preset.setKeybind(new Keybind((int) readLong(in), (int) readLong(in)));
+		}
+		preset.setLocal(readBoolean(in));
+		preset.setLoadOnFocus(readBoolean(in));
+		preset.setAutoUpdated(readBoolean(in));
+
+		int configCount = readCount(in) - 1;
+		List<PluginConfig> pluginConfigs = configCount < 0 ? null : new ArrayList<>(configCount);
+		for (int i = 0; i < configCount; i++)
+		{
+			PluginConfig config = new PluginConfig(readString(in, strings), readString(in, strings), readBoolean(in), null);
+
+			int settingCount = readCount(in) - 1;
+			List<PluginSetting> settings = settingCount < 0 ? null : new ArrayList<>(settingCount);
+			for (int j = 0; j < settingCount; j++)
+			{
+				settings.add(new PluginSetting(readString(in, strings), readString(in, strings), readString(in, strings),
+					readString(in, strings), readString(in, strings)));
+			}
+			config.setSettings(settings);
+			pluginConfigs.add(config);
+		}
+		preset.setPluginConfigs(pluginConfigs);
+
+		return preset;
+	}
+
+	private static void writeString(final ByteArrayOutputStream out, final Map<String, Integer> strings, final String string)
+	{
+		// Index 0 is null
+		writeVarint(out, string == null ? 0 : strings.computeIfAbsent(string, s -> strings.size()) + 1);
+	}
+
+	private static String readString(final ByteBuffer in, final String[] strings) throws IOException
+	{
+		int index = readCount(in);
+		if (index > strings.length)
+		{
+			throw new IOException("String index out of bounds");
+		}
+		return index == 0 ? null : strings[index - 1];
+	}
+
+	private static void writeBoolean(final ByteArrayOutputStream out, final Boolean value)
+	{
+		out.write(value == null ? NULL : value ? TRUE : FALSE);
+	}
+
+	private static Boolean readBoolean(final ByteBuffer in) throws IOException
+	{
+		int value = in.get() & 0xFF;
+		switch (value)
+		{
+			case NULL:
+				return null;
+			case FALSE:
+				return false;
+			case TRUE:
+				return true;
+			default:
+				throw new IOException("Invalid boolean " + value);
+		}
+	}
+
+	/**
+	 * Writes list size, 0 for null and size + 1 otherwise.
+	 */
+	private static void writeCount(final ByteArrayOutputStream out, final List<?> list)
+	{
+		writeVarint(out, list == null ? 0 : list.size() + 1);
+	}
+
+	private static int readCount(final ByteBuffer in) throws IOException
+	{
+		long count = readVarint(in);
+		if (count < 0 || count > MAX_COUNT)
+		{
+			throw new IOException("Count out of bounds " + count);
+		}
+		return (int) count;
+	}
+
+	/**
+	 * Writes signed number as zigzag encoded varint, so that small negative numbers stay short.
+	 */
+	private static void writeLong(final ByteArrayOutputStream out, final long value)
+	{
+		writeVarint(out, (value << 1) ^ (value >> 63));
+	}
+
+	private static long readLong(final ByteBuffer in) throws IOException
+	{
+		long value = readVarint(in);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarint(final ByteArrayOutputStream out, long value)
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarint(final ByteBuffer in) throws IOException
+	{
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = in.get() & 0xFF;
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		throw new IOException("Varint too long");
+	}
+}
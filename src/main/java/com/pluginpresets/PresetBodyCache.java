@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps plugin configs in memory only for the most recently used presets of preset folder.
+ * Presets are loaded from preset folder with just their header (see {@link PresetFile}),
+ * their configs are loaded when the preset is edited or loaded, or match checked without a reusable earlier result.
+ * <p>
+ * Configs are only dropped from memory if they are unchanged since they were loaded or written,
+ * and never for presets that are in use or have custom settings.
+ */
+public class PresetBodyCache
+{
+	private final int maxSize;
+	private final Function<PluginPreset, List<PluginConfig>> loader;
+	private final Predicate<PluginPreset> inUse;
+
+	/**
+	 * Presets with loaded configs in access order, with copies of their configs as they were loaded or last written.
+	 */
+	private final LinkedHashMap<PluginPreset, List<PluginConfig>> loadedPresets = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * @param maxSize max number of presets to keep configs in memory for, unless they can't be dropped
+	 * @param loader  loads configs of a preset from preset folder
+	 * @param inUse   tells if the preset is being edited or auto updated
+	 */
+	public PresetBodyCache(int maxSize, Function<PluginPreset, List<PluginConfig>> loader, Predicate<PluginPreset> inUse)
+	{
+		this.maxSize = maxSize;
+		this.loader = loader;
+		this.inUse = inUse;
+	}
+
+	/**
+	 * Loads configs of the preset, called by the preset when its configs are needed.
+	 */
+	public List<PluginConfig> load(PluginPreset preset)
+	{
+		// Not holding the lock while reading the file, writes to preset folder update this cache
+		List<PluginConfig> pluginConfigs = loader.apply(preset);
+		add(preset, pluginConfigs);
+		return pluginConfigs;
+	}
+
+	/**
+	 * Adds preset whose configs were loaded with the preset.
+	 */
+	public synchronized void add(PluginPreset preset, List<PluginConfig> pluginConfigs)
+	{
+		loadedPresets.put(preset, copyOf(pluginConfigs));
+		evict();
+	}
+
+	public synchronized void accessed(PluginPreset preset)
+	{
+		loadedPresets.get(preset);
+	}
+
+	/**
+	 * Updates configs of presets with the given id to be as they were just written to preset folder.
+	 */
+	public synchronized void written(long id, List<PluginConfig> pluginConfigs)
+	{
+		loadedPresets.replaceAll((preset, configs) -> preset.getId() == id ? pluginConfigs : configs);
+	}
+
+	public synchronized void remove(long id)
+	{
+		loadedPresets.keySet().removeIf(preset -> preset.getId() == id);
+	}
+
+	/**
+	 * Removes all presets, e.g. when all presets are loaded again.
+	 *
+	 * @return configs of the removed presets as they were loaded or last written, by preset id
+	 */
+	public synchronized Map<Long, List<PluginConfig>> clear()
+	{
+		Map<Long, List<PluginConfig>> storedConfigs = new HashMap<>();
+		loadedPresets.forEach((preset, pluginConfigs) -> storedConfigs.put(preset.getId(), pluginConfigs));
+		loadedPresets.clear();
+		return storedConfigs;
+	}
+
+	private void evict()
+	{
+		Iterator<Map.Entry<PluginPreset, List<PluginConfig>>> iterator = loadedPresets.entrySet().iterator();
+		while (loadedPresets.size() > maxSize && iterator.hasNext())
+		{
+			Map.Entry<PluginPreset, List<PluginConfig>> entry = iterator.next();
+			PluginPreset preset = entry.getKey();
+			List<PluginConfig> pluginConfigs = preset.getLoadedPluginConfigs();
+
+			if (pluginConfigs == null)
+			{
+				iterator.remove();
+			}
+			else if (canUnload(preset, pluginConfigs, entry.getValue()))
+			{
+				preset.unloadPluginConfigs();
+				iterator.remove();
+			}
+		}
+	}
+
+	private boolean canUnload(PluginPreset preset, List<PluginConfig> pluginConfigs, List<PluginConfig> storedConfigs)
+	{
+		// Presets moved to RuneLite config have nothing to load their configs from
+		if (!Boolean.TRUE.equals(preset.getLocal()) || inUse.test(preset))
+		{
+			return false;
+		}
+
+		// Custom settings refer to the loaded configs
+		if (pluginConfigs.stream().anyMatch(PluginConfig::containsCustomSettings))
+		{
+			return false;
+		}
+
+		return pluginConfigs.equals(storedConfigs);
+	}
+
+	private static List<PluginConfig> copyOf(List<PluginConfig> pluginConfigs)
+	{
+		return pluginConfigs.stream().map(PluginConfig::copy).collect(Collectors.toCollection(ArrayList::new));
+	}
+}
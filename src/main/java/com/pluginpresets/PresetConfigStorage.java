@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.config.ConfigManager;
+
+/**
+ * Stores presets that are synced with RuneLite config, each under its own key "presets.id", with an index key
+ * listing the ids. Only presets that changed since they were last loaded or written are written to config,
+ * so syncing a change does not upload every preset.
+ * <p>
+ * Presets are only parsed from config when their json has changed since, otherwise the last parsed preset is reused.
+ */
+@Slf4j
+@Singleton
+public class PresetConfigStorage
+{
+	private static final String CONFIG_KEY_PRESET_PREFIX = "presets.";
+	private static final String CONFIG_KEY_PRESET_INDEX = "presetIndex";
+
+	/**
+	 * All presets in a single json list, from before presets had their own keys.
+	 */
+	private static final String CONFIG_KEY_LEGACY_PRESETS = "presets";
+
+	private static final TypeToken<ArrayList<PluginPreset>> PRESET_LIST_TYPE = new TypeToken<ArrayList<PluginPreset>>()
+	{
+	};
+	private static final TypeToken<List<Long>> PRESET_INDEX_TYPE = new TypeToken<List<Long>>()
+	{
+	};
+
+	private final ConfigManager configManager;
+	private final Gson gson;
+
+	/**
+	 * Presets by id as they are in config, used to only write presets that changed and only parse presets that changed.
+	 */
+	private final Map<Long, StoredPreset> storedPresets = new LinkedHashMap<>();
+
+	@Inject
+	public PresetConfigStorage(ConfigManager configManager, Gson gson)
+	{
+		this.configManager = configManager;
+		this.gson = PresetTypeAdapters.register(gson);
+	}
+
+	/**
+	 * Loads presets from config. Presets from the old single key are moved to their own keys first.
+	 */
+	public List<PluginPreset> loadPresets()
+	{
+		Map<Long, StoredPreset> previousPresets = new HashMap<>(storedPresets);
+		storedPresets.clear();
+
+		Map<Long, PluginPreset> presets = new LinkedHashMap<>();
+		boolean indexValid = true;
+		for (Long id : readIndex())
+		{
+			if (id == null)
+			{
+				log.warn("Preset index in config has a malformed id");
+				indexValid = false;
+				continue;
+			}
+
+			String json = configManager.getConfiguration(PluginPresetsPlugin.CONFIG_GROUP, CONFIG_KEY_PRESET_PREFIX + id);
+			String hash = json != null ? hash(json) : null;
+
+			StoredPreset storedPreset = previousPresets.get(id);
+			if (storedPreset == null || !storedPreset.hash.equals(hash))
+			{
+				PluginPreset preset = parsePreset(json);
+				if (preset == null || preset.getId() != id)
+				{
+					log.warn(String.format("Preset %d in config is missing or malformed", id));
+					indexValid = false;
+					continue;
+				}
+				storedPreset = new StoredPreset(hash, preset);
+			}
+
+			storedPresets.put(id, storedPreset);
+			presets.put(id, storedPreset.preset.copy());
+		}
+
+		if (!indexValid)
+		{
+			writeIndex();
+		}
+
+		migrateLegacyPresets(presets);
+
+		presets.values().forEach(preset -> preset.setLocal(false));
+		return new ArrayList<>(presets.values());
+	}
+
+	/**
+	 * Writes presets that changed since they were last loaded or written, and removes presets that are gone.
+	 */
+	public void savePresets(final List<PluginPreset> syncPresets)
+	{
+		Map<Long, PluginPreset> presets = new LinkedHashMap<>();
+		syncPresets.forEach(preset -> presets.putIfAbsent(preset.getId(), preset));
+		savePresets(presets);
+	}
+
+	private void savePresets(final Map<Long, PluginPreset> presets)
+	{
+		boolean indexChanged = !storedPresets.keySet().equals(presets.keySet());
+
+		presets.forEach((id, preset) ->
+		{
+			String json = gson.toJson(preset, PluginPreset.class);
+			String hash = hash(json);
+			StoredPreset storedPreset = storedPresets.get(id);
+			if (storedPreset == null || !storedPreset.hash.equals(hash))
+			{
+				configManager.setConfiguration(PluginPresetsPlugin.CONFIG_GROUP, CONFIG_KEY_PRESET_PREFIX + id, json);
+				storedPresets.put(id, new StoredPreset(hash, preset.copy()));
+			}
+		});
+
+		List<Long> removedIds = new ArrayList<>(storedPresets.keySet());
+		removedIds.removeAll(presets.keySet());
+		removedIds.forEach(id ->
+		{
+			configManager.unsetConfiguration(PluginPresetsPlugin.CONFIG_GROUP, CONFIG_KEY_PRESET_PREFIX + id);
+			storedPresets.remove(id);
+		});
+
+		if (indexChanged)
+		{
+			writeIndex();
+		}
+	}
+
+	private List<Long> readIndex()
+	{
+		String json = configManager.getConfiguration(PluginPresetsPlugin.CONFIG_GROUP, CONFIG_KEY_PRESET_INDEX);
+		if (Strings.isNullOrEmpty(json))
+		{
+			return new ArrayList<>();
+		}
+
+		try
+		{
+			List<Long> ids = gson.fromJson(json, PRESET_INDEX_TYPE.getType());
+			return ids != null ? ids : new ArrayList<>();
+		}
+		catch (JsonParseException e)
+		{
+			log.warn(String.format("Preset index in config is malformed, %s", e.getMessage()));
+			return new ArrayList<>();
+		}
+	}
+
+	/**
+	 * Writes the ids of the stored presets as index, and removes preset keys that are not in it, such as those of
+	 * malformed presets.
+	 */
+	private void writeIndex()
+	{
+		if (storedPresets.isEmpty())
+		{
+			configManager.unsetConfiguration(PluginPresetsPlugin.CONFIG_GROUP, CONFIG_KEY_PRESET_INDEX);
+		}
+		else
+		{
+			String json = gson.toJson(new ArrayList<>(storedPresets.keySet()), PRESET_INDEX_TYPE.getType());
+			configManager.setConfiguration(PluginPresetsPlugin.CONFIG_GROUP, CONFIG_KEY_PRESET_INDEX, json);
+		}
+
+		removeUnindexedPresets();
+	}
+
+	private void removeUnindexedPresets()
+	{
+		String groupPrefix = PluginPresetsPlugin.CONFIG_GROUP + ".";
+		List<String> keys = configManager.getConfigurationKeys(groupPrefix + CONFIG_KEY_PRESET_PREFIX);
+		if (keys == null)
+		{
+			return;
+		}
+
+		for (String key : keys)
+		{
+			String presetKey = key.substring(groupPrefix.length());
+			if (!storedPresets.containsKey(parseId(presetKey.substring(CONFIG_KEY_PRESET_PREFIX.length()))))
+			{
+				configManager.unsetConfiguration(PluginPresetsPlugin.CONFIG_GROUP, presetKey);
+				log.warn(String.format("Removed preset key %s from config, it is not in the preset index", presetKey));
+			}
+		}
+	}
+
+	private static Long parseId(final String id)
+	{
+		try
+		{
+			return Long.parseLong(id);
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Moves presets from the old single key to their own keys, presets that already have a key are kept as they are.
+	 */
+	private void migrateLegacyPresets(final Map<Long, PluginPreset> presets)
+	{
+		String json = configManager.getConfiguration(PluginPresetsPlugin.CONFIG_GROUP, CONFIG_KEY_LEGACY_PRESETS);
+		if (Strings.isNullOrEmpty(json))
+		{
+			return;
+		}
+
+		List<PluginPreset> legacyPresets;
+		try
+		{
+			legacyPresets = gson.fromJson(json, PRESET_LIST_TYPE.getType());
+		}
+		catch (JsonParseException e)
+		{
+			// Left in config, so that nothing is lost
+			log.warn(String.format("Presets in config are malformed and could not be moved to their own keys, %s", e.getMessage()));
+			return;
+		}
+
+		if (legacyPresets != null)
+		{
+			legacyPresets.stream()
+				.filter(preset -> preset != null)
+				.forEach(preset -> presets.putIfAbsent(preset.getId(), preset));
+		}
+
+		savePresets(presets);
+		configManager.unsetConfiguration(PluginPresetsPlugin.CONFIG_GROUP, CONFIG_KEY_LEGACY_PRESETS);
+		log.info(String.format("Moved %d presets in config to their own keys", legacyPresets != null ? legacyPresets.size() : 0));
+	}
+
+	private static String hash(final String json)
+	{
+		return Hashing.murmur3_128().hashString(json, StandardCharsets.UTF_8).toString();
+	}
+
+	private PluginPreset parsePreset(final String json)
+	{
+		if (Strings.isNullOrEmpty(json))
+		{
+			return null;
+		}
+
+		try
+		{
+			return gson.fromJson(json, PluginPreset.class);
+		}
+		catch (JsonParseException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Preset as it is in config, with the hash of its json. The preset is a copy that is never changed.
+	 */
+	@AllArgsConstructor
+	private static class StoredPreset
+	{
+		private final String hash;
+		private final PluginPreset preset;
+	}
+}
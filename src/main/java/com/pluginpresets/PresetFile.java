@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import net.runelite.client.config.Keybind;
+
+/**
+ * A preset file in the preset folder as it was last loaded or written by this client.
+ * Also an entry of the preset folder manifest, with the header of the preset in the file,
+ * and the header of a preset in the {@link PresetPack}.
+ *
+ * @param fileName       Name of the file in the preset folder
+ * @param id             Id of the preset in the file
+ * @param name           Name of the preset in the file
+ * @param keybind        Keybind of the preset in the file
+ * @param loadOnFocus    Load on focus of the preset in the file
+ * @param autoUpdated    Auto updated status of the preset in the file
+ * @param customSettings True if the preset in the file has custom settings
+ * @param hash           Hash of the file contents, used to skip rewriting presets that have not changed
+ * @param size           Size of the file in bytes
+ * @param lastModified   Modification time of the file, used with size to spot unchanged files without reading them
+ */
+@Data
+@AllArgsConstructor
+public class PresetFile
+{
+	private String fileName;
+	private long id;
+	private String name;
+	private Keybind keybind;
+	private Boolean loadOnFocus;
+	private Boolean autoUpdated;
+	private boolean customSettings;
+	private String hash;
+	private long size;
+	private long lastModified;
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Trailing edge debounce for preset folder changes.
+ * Changes are collected until the folder has been quiet for the quiet period and then passed on as one batch.
+ * During a long burst of changes, the batch is passed on at the latest after the max delay.
+ */
+public class PresetFolderDebouncer
+{
+	private final ScheduledExecutorService executor;
+	private final long quietPeriodMillis;
+	private final long maxDelayMillis;
+
+	/**
+	 * Receives the changed file names and whether the whole folder should be refreshed.
+	 */
+	private final BiConsumer<Set<String>, Boolean> onChanges;
+
+	private final Set<String> changedFileNames = new HashSet<>();
+	private boolean fullRefresh = false;
+	private long burstStartMillis;
+	private ScheduledFuture<?> scheduledFlush;
+
+	public PresetFolderDebouncer(ScheduledExecutorService executor, long quietPeriodMillis, long maxDelayMillis,
+								 BiConsumer<Set<String>, Boolean> onChanges)
+	{
+		this.executor = executor;
+		this.quietPeriodMillis = quietPeriodMillis;
+		this.maxDelayMillis = maxDelayMillis;
+		this.onChanges = onChanges;
+	}
+
+	/**
+	 * Adds changes to the current batch and postpones passing it on until the folder is quiet again.
+	 *
+	 * @param fileNames   names of changed files in preset folder
+	 * @param fullRefresh true if the whole folder should be refreshed, e.g. when the watcher lost some events
+	 */
+	public synchronized void addChanges(Collection<String> fileNames, boolean fullRefresh)
+	{
+		long now = System.currentTimeMillis();
+		if (scheduledFlush == null)
+		{
+			burstStartMillis = now;
+		}
+		else
+		{
+			scheduledFlush.cancel(false);
+		}
+
+		changedFileNames.addAll(fileNames);
+		this.fullRefresh |= fullRefresh;
+
+		long delay = Math.max(0, Math.min(quietPeriodMillis, burstStartMillis + maxDelayMillis - now));
+		scheduledFlush = executor.schedule(this::flush, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Drops changes that have not been passed on yet.
+	 */
+	public synchronized void cancel()
+	{
+		if (scheduledFlush != null)
+		{
+			scheduledFlush.cancel(false);
+			scheduledFlush = null;
+		}
+		changedFileNames.clear();
+		fullRefresh = false;
+	}
+
+	private void flush()
+	{
+		final Set<String> fileNames;
+		final boolean refreshAll;
+
+		synchronized (this)
+		{
+			// Cancelled flush that had already started, changes got passed on by an earlier flush
+			if (changedFileNames.isEmpty() && !fullRefresh)
+			{
+				return;
+			}
+
+			fileNames = new HashSet<>(changedFileNames);
+			refreshAll = fullRefresh;
+			changedFileNames.clear();
+			fullRefresh = false;
+			scheduledFlush = null;
+		}
+
+		onChanges.accept(fileNames, refreshAll);
+	}
+}
@@ -0,0 +1,511 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Append-only log of preset edits next to the preset files. An edit is a single synced append instead of rewriting
+ * the whole preset, the edits are folded into the preset files later by a regular save.
+ * Presets loaded before the fold, e.g. after a crash, get the logged edits replayed on top of them.
+ * <p>
+ * Every client sharing the preset folder has journal segments of its own, locked while the client runs, so clients
+ * only fold and replay their own edits. Segments left behind by a client that is gone are adopted on the next load.
+ * Appends, folds and reads run in order on a single background thread, so the syncs never block the caller.
+ */
+@Slf4j
+public class PresetJournal
+{
+	private static final String FILE_PREFIX = ".edits-";
+	private static final String FILE_SUFFIX = ".journal";
+
+	private final File folder;
+	private final Gson gson;
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Part of the segment names of this client, the names are unique across clients.
+	 */
+	private final String clientId = UUID.randomUUID().toString();
+
+	private long lastMark;
+
+	/**
+	 * Segments of this client, oldest first. Only the last one can be open for appends, the others are sealed by a mark.
+	 * Only used on the journal thread.
+	 */
+	private final List<Segment> segments = new ArrayList<>();
+	private int segmentCount;
+	private boolean orphansAdopted;
+
+	public PresetJournal(File folder, Gson gson)
+	{
+		this.folder = folder;
+		this.gson = gson;
+
+		// Thread is only kept around while there is something to write
+		executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable ->
+		{
+			Thread thread = new Thread(runnable, "PresetJournal");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Checks if file in preset folder is a journal segment of any client.
+	 */
+	public static boolean isJournalFile(final String fileName)
+	{
+		return fileName.startsWith(FILE_PREFIX) && fileName.endsWith(FILE_SUFFIX);
+	}
+
+	/**
+	 * Appends the current state of the given plugin configs of the preset in the background, a plugin no longer
+	 * in the preset is logged as removed. The configs are serialized right away, so the preset can be edited again.
+	 *
+	 * @return future completed with true once the edits are synced to disk, or with false if they could not be written
+	 */
+	public CompletableFuture<Boolean> append(final PluginPreset preset, final Collection<String> pluginNames)
+	{
+		Map<String, PluginConfig> pluginConfigs = new HashMap<>();
+		preset.getPluginConfigs().forEach(config -> pluginConfigs.putIfAbsent(config.getName(), config));
+
+		StringBuilder lines = new StringBuilder();
+		for (String pluginName : pluginNames)
+		{
+			lines.append(gson.toJson(new Entry(preset.getId(), pluginName, pluginConfigs.get(pluginName)))).append('\n');
+		}
+
+		final byte[] data = lines.toString().getBytes(StandardCharsets.UTF_8);
+		return CompletableFuture.supplyAsync(() -> write(data), executor);
+	}
+
+	/**
+	 * Seals the edits appended so far, later edits go to a new segment.
+	 *
+	 * @return mark to fold the sealed edits with, once they are written to the preset files
+	 */
+	public synchronized long mark()
+	{
+		final long mark = ++lastMark;
+		executor.execute(() -> seal(mark));
+		return mark;
+	}
+
+	/**
+	 * Drops edits sealed up to the given mark, once they are written to the preset files.
+	 * Edits appended after the mark are kept.
+	 *
+	 * @return future completed once the edits are dropped
+	 */
+	public CompletableFuture<Void> fold(final long mark)
+	{
+		return CompletableFuture.runAsync(() -> dropSealed(mark), executor);
+	}
+
+	/**
+	 * Replays logged edits on the local presets with the same id, edits of other presets are skipped.
+	 * Waits for edits that are still being appended, so it is called by loads off the EDT.
+	 */
+	public void replay(final List<PluginPreset> pluginPresets)
+	{
+		List<Entry> entries = CompletableFuture.supplyAsync(this::read, executor).join();
+		if (entries.isEmpty())
+		{
+			return;
+		}
+
+		Map<Long, PluginPreset> localPresets = new HashMap<>();
+		pluginPresets.stream()
+			.filter(PluginPreset::getLocal)
+			.forEach(preset -> localPresets.putIfAbsent(preset.getId(), preset));
+
+		for (Entry entry : entries)
+		{
+			PluginPreset preset = localPresets.get(entry.id);
+			if (preset == null)
+			{
+				continue;
+			}
+
+			List<PluginConfig> pluginConfigs = preset.getPluginConfigs();
+			int index = indexOf(pluginConfigs, entry.plugin);
+			if (entry.config == null)
+			{
+				if (index != -1)
+				{
+					pluginConfigs.remove(index);
+				}
+			}
+			else if (index != -1)
+			{
+				pluginConfigs.set(index, entry.config.copy());
+			}
+			else
+			{
+				pluginConfigs.add(entry.config.copy());
+			}
+		}
+	}
+
+	/**
+	 * Releases the segments of this client once queued appends and folds are done.
+	 * Segments that still have edits stay on disk and are adopted on next load.
+	 *
+	 * @return future completed once the segments are released
+	 */
+	public CompletableFuture<Void> close()
+	{
+		return CompletableFuture.runAsync(this::closeSegments, executor);
+	}
+
+	private static int indexOf(final List<PluginConfig> pluginConfigs, final String pluginName)
+	{
+		for (int i = 0; i < pluginConfigs.size(); i++)
+		{
+			if (pluginConfigs.get(i).getName().equals(pluginName))
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private boolean write(final byte[] data)
+	{
+		Segment segment = null;
+		long start = 0;
+		try
+		{
+			segment = openSegment();
+			start = segment.channel.size();
+
+			ByteBuffer buffer = ByteBuffer.wrap(data);
+			while (buffer.hasRemaining())
+			{
+				segment.channel.write(buffer, start + buffer.position());
+			}
+			segment.channel.force(false);
+			return true;
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to write preset edit to journal, %s", e.getMessage()));
+
+			if (segment != null)
+			{
+				// Drop a partly written edit, so that it does not break the next one
+				try
+				{
+					segment.channel.truncate(start);
+				}
+				catch (IOException truncateException)
+				{
+					log.warn(String.format("Failed to truncate %s, %s", segment.file.getName(), truncateException.getMessage()));
+				}
+			}
+			return false;
+		}
+	}
+
+	private Segment openSegment() throws IOException
+	{
+		if (!segments.isEmpty() && !segments.get(segments.size() - 1).isSealed())
+		{
+			return segments.get(segments.size() - 1);
+		}
+
+		File file = new File(folder, String.format("%s%s-%d%s", FILE_PREFIX, clientId, ++segmentCount, FILE_SUFFIX));
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE_NEW,
+			StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try
+		{
+			// Held until the segment is folded, so other clients know it is not left behind
+			channel.lock();
+		}
+		catch (IOException e)
+		{
+			channel.close();
+			deleteFile(file);
+			throw e;
+		}
+
+		Segment segment = new Segment(file, channel);
+		segments.add(segment);
+		return segment;
+	}
+
+	private void seal(final long mark)
+	{
+		if (!segments.isEmpty() && !segments.get(segments.size() - 1).isSealed())
+		{
+			segments.get(segments.size() - 1).mark = mark;
+		}
+	}
+
+	private void dropSealed(final long mark)
+	{
+		Iterator<Segment> iterator = segments.iterator();
+		while (iterator.hasNext())
+		{
+			Segment segment = iterator.next();
+			if (!segment.isSealed() || segment.mark > mark)
+			{
+				break;
+			}
+
+			iterator.remove();
+			// Deleted while still locked, so no other client adopts it in between
+			deleteFile(segment.file);
+			closeChannel(segment);
+		}
+	}
+
+	private void closeSegments()
+	{
+		for (Segment segment : segments)
+		{
+			try
+			{
+				if (segment.channel.size() == 0)
+				{
+					deleteFile(segment.file);
+				}
+			}
+			catch (IOException e)
+			{
+				log.warn(String.format("Failed to read %s, %s", segment.file.getName(), e.getMessage()));
+			}
+			closeChannel(segment);
+		}
+		segments.clear();
+		orphansAdopted = false;
+	}
+
+	/**
+	 * Reads logged edits of this client, lines torn by a crash in the middle of an append are skipped.
+	 */
+	private List<Entry> read()
+	{
+		if (!orphansAdopted)
+		{
+			adoptOrphans();
+			orphansAdopted = true;
+		}
+
+		List<Entry> entries = new ArrayList<>();
+		for (Segment segment : segments)
+		{
+			try
+			{
+				parse(segment.file.getName(), readAll(segment.channel), entries);
+			}
+			catch (IOException e)
+			{
+				log.warn(String.format("Failed to read %s, %s", segment.file.getName(), e.getMessage()));
+			}
+		}
+		return entries;
+	}
+
+	/**
+	 * Copies edits in segments of clients that are gone to a segment of this client, oldest first.
+	 */
+	private void adoptOrphans()
+	{
+		File[] files = folder.listFiles((dir, name) -> isJournalFile(name));
+		if (files == null)
+		{
+			return;
+		}
+
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (File file : files)
+		{
+			if (segments.stream().noneMatch(segment -> segment.file.equals(file)))
+			{
+				adopt(file);
+			}
+		}
+	}
+
+	private void adopt(final File file)
+	{
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			FileLock lock = channel.tryLock();
+			if (lock == null)
+			{
+				// Client is still running
+				return;
+			}
+
+			byte[] data = readAll(channel);
+			if (data.length == 0)
+			{
+				// Might be a segment another client just created and has not locked yet
+				return;
+			}
+
+			if (data[data.length - 1] != '\n')
+			{
+				// Torn last line must not run into the next edit
+				data = Arrays.copyOf(data, data.length + 1);
+				data[data.length - 1] = '\n';
+			}
+
+			if (write(data))
+			{
+				deleteFile(file);
+			}
+		}
+		catch (OverlappingFileLockException e)
+		{
+			// Locked by this client
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to read %s, %s", file.getName(), e.getMessage()));
+		}
+	}
+
+	private void parse(final String fileName, final byte[] data, final List<Entry> entries)
+	{
+		for (String line : new String(data, StandardCharsets.UTF_8).split("\n"))
+		{
+			if (line.isEmpty())
+			{
+				continue;
+			}
+
+			try
+			{
+				Entry entry = gson.fromJson(line, Entry.class);
+				if (entry != null && entry.plugin != null)
+				{
+					entries.add(entry);
+				}
+			}
+			catch (JsonParseException e)
+			{
+				log.warn(String.format("Skipped broken edit in %s, %s", fileName, e.getMessage()));
+			}
+		}
+	}
+
+	private static byte[] readAll(final FileChannel channel) throws IOException
+	{
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long position = 0;
+		int read;
+		while ((read = channel.read(buffer, position)) > 0)
+		{
+			outputStream.write(buffer.array(), 0, read);
+			position += read;
+			buffer.clear();
+		}
+		return outputStream.toByteArray();
+	}
+
+	private static void deleteFile(final File file)
+	{
+		if (!file.delete())
+		{
+			log.warn(String.format("Could not delete %s", file.getName()));
+		}
+	}
+
+	private static void closeChannel(final Segment segment)
+	{
+		try
+		{
+			segment.channel.close();
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to close %s, %s", segment.file.getName(), e.getMessage()));
+		}
+	}
+
+	/**
+	 * Journal file of this client, mark is set once later edits go to the next segment.
+	 */
+	private static class Segment
+	{
+		private final File file;
+		private final FileChannel channel;
+		private long mark;
+
+		private Segment(File file, FileChannel channel)
+		{
+			this.file = file;
+			this.channel = channel;
+		}
+
+		private boolean isSealed()
+		{
+			return mark != 0;
+		}
+	}
+
+	/**
+	 * Edit of a single plugin config, config is null when the plugin was removed from the preset.
+	 */
+	@AllArgsConstructor
+	private static class Entry
+	{
+		private final long id;
+		private final String plugin;
+		private final PluginConfig config;
+	}
+}
@@ -0,0 +1,794 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import lombok.AllArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.client.config.Keybind;
+
+/**
+ * All local presets in a single append-only file. Saving a preset appends a record with its header and its
+ * {@link PresetBinaryFormat binary} body, removing a preset appends a delete record.
+ * <p>
+ * Once most of the file is replaced records, the live records are compacted to a new file that ends in an index
+ * of their offsets, so the next load finds them without going through the records one by one.
+ * <p>
+ * The file is read with positional reads, loading only reads the index and the record headers
+ * and a preset body is read from its offset when it is needed. No handle to the file is kept open between reads,
+ * so that the file can be replaced and truncated on every platform.
+ * <p>
+ * Clients sharing the preset folder write the pack under a lock on a separate lock file, which is never replaced.
+ * A client that finds the pack changed by another client reads it again under the lock before writing,
+ * so that only records failing their checks are ever cut from its end.
+ */
+@Slf4j
+public class PresetPack
+{
+	private static final byte[] MAGIC = {'P', 'P', 'K', 1};
+
+	/**
+	 * Magic and offset of the index record, 0 if the file has no index.
+	 */
+	private static final int FILE_HEADER_LENGTH = MAGIC.length + Long.BYTES;
+
+	/**
+	 * Record type, payload length and CRC32 of the payload.
+	 */
+	private static final int RECORD_HEADER_LENGTH = 1 + Integer.BYTES + Integer.BYTES;
+
+	private static final byte PUT = 1;
+	private static final byte DELETE = 2;
+	private static final byte INDEX = 3;
+
+	/**
+	 * Bytes read from the start of a put record when only its header is needed, longer headers are read in full.
+	 */
+	private static final int HEADER_READ_LENGTH = 256;
+
+	/**
+	 * File is not compacted before it has at least this many bytes of replaced records.
+	 */
+	private static final long MIN_COMPACTION_GARBAGE = 64 * 1024;
+
+	private static final String LOCK_FILE_PREFIX = ".";
+	private static final String LOCK_FILE_SUFFIX = ".lock";
+
+	private final File file;
+	private final File lockFile;
+
+	/**
+	 * Live records by preset id, in the order they were written.
+	 */
+	private final Map<Long, Entry> entries = new LinkedHashMap<>();
+
+	private long liveBytes;
+
+	/**
+	 * End of the last valid record, where the next record is written. 0 for no file and -1 for a file that can't be read.
+	 */
+	private long validLength;
+
+	/**
+	 * Size and modification time of the file when it was last read or written by this client.
+	 */
+	private long knownLength;
+	private long knownLastModified;
+
+	/**
+	 * Set when the pack was read again before a write, because another client had changed it.
+	 * Presets of the client are then out of date until the pack is loaded.
+	 */
+	private boolean changedByOthers;
+
+	public PresetPack(final File file)
+	{
+		this.file = file;
+		this.lockFile = new File(file.getParentFile(), LOCK_FILE_PREFIX + file.getName() + LOCK_FILE_SUFFIX);
+	}
+
+	/**
+	 * Checks if file in preset folder is the lock file of a pack.
+	 */
+	public static boolean isLockFile(final String fileName)
+	{
+		return fileName.startsWith(LOCK_FILE_PREFIX) && fileName.endsWith(LOCK_FILE_SUFFIX);
+	}
+
+	public synchronized boolean isEmpty()
+	{
+		return entries.isEmpty();
+	}
+
+	public synchronized boolean contains(final long id)
+	{
+		return entries.containsKey(id);
+	}
+
+	/**
+	 * @return header of the preset as it is in the pack, or null if the pack does not have the preset
+	 */
+	public synchronized PresetFile getEntry(final long id)
+	{
+		Entry entry = entries.get(id);
+		return entry != null ? entry.header : null;
+	}
+
+	/**
+	 * @return headers of all presets in the pack by preset id
+	 */
+	public synchronized Map<Long, PresetFile> getEntries()
+	{
+		Map<Long, PresetFile> headers = new LinkedHashMap<>();
+		entries.forEach((id, entry) -> headers.put(id, entry.header));
+		return headers;
+	}
+
+	/**
+	 * Checks if some other client has changed the file since this client last read or wrote it.
+	 */
+	public synchronized boolean isChangedOnDisk()
+	{
+		return changedByOthers || file.length() != knownLength || file.lastModified() != knownLastModified;
+	}
+
+	/**
+	 * Reads the index and record headers of the pack, a broken end of the file is left out and overwritten by the next write.
+	 *
+	 * @return headers of all presets in the pack
+	 * @throws IOException if the file can't be read or it is not a pack, the pack is not written to after this
+	 */
+	public synchronized List<PresetFile> load() throws IOException
+	{
+		entries.clear();
+		liveBytes = 0;
+		validLength = 0;
+		changedByOthers = false;
+
+		knownLastModified = file.lastModified();
+		if (!file.isFile())
+		{
+			knownLength = 0;
+			return new ArrayList<>();
+		}
+
+		validLength = -1;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			knownLength = channel.size();
+			validLength = knownLength == 0 ? 0 : readRecords(channel, knownLength);
+		}
+
+		return new ArrayList<>(getEntries().values());
+	}
+
+	private long readRecords(final FileChannel channel, final long size) throws IOException
+	{
+		byte[] magic = new byte[MAGIC.length];
+		ByteBuffer fileHeader = size >= FILE_HEADER_LENGTH ? read(channel, 0, FILE_HEADER_LENGTH) : null;
+		if (fileHeader == null || !Arrays.equals(MAGIC, getBytes(fileHeader, 0, magic)))
+		{
+			throw new IOException("Not a preset pack");
+		}
+
+		long position = FILE_HEADER_LENGTH;
+		long indexOffset = fileHeader.getLong(MAGIC.length);
+		ByteBuffer index = indexOffset != 0 ? readPayload(channel, size, indexOffset, INDEX) : null;
+		if (index != null)
+		{
+			int count = index.getInt();
+			for (int i = 0; i < count; i++)
+			{
+				long id = index.getLong();
+				long offset = index.getLong();
+
+				// Records in the index were checked when they were compacted, bodies are checked when they are read
+				ByteBuffer recordHeader = readRecordHeader(channel, size, offset, PUT);
+				PresetFile header = recordHeader != null ? readHeader(channel, offset, recordHeader.getInt(1)) : null;
+				if (header == null || header.getId() != id)
+				{
+					throw new IOException("Preset pack index is broken");
+				}
+				addEntry(header, offset, RECORD_HEADER_LENGTH + recordHeader.getInt(1));
+			}
+			position = indexOffset + RECORD_HEADER_LENGTH + index.limit();
+		}
+
+		// Records written since the file was last compacted
+		while (position < size)
+		{
+			ByteBuffer recordHeader = readRecordHeader(channel, size, position, (byte) 0);
+			ByteBuffer payload = recordHeader != null ? readPayload(channel, position, recordHeader) : null;
+			if (payload == null)
+			{
+				log.warn(String.format("Preset pack %s is broken after %d bytes, the rest of it is discarded", file.getAbsolutePath(), position));
+				break;
+			}
+
+			int length = RECORD_HEADER_LENGTH + payload.limit();
+			byte type = recordHeader.get(0);
+			if (type == PUT)
+			{
+				addEntry(readHeader(payload), position, length);
+			}
+			else if (type == DELETE)
+			{
+				removeEntry(payload.getLong());
+			}
+			position += length;
+		}
+
+		return position;
+	}
+
+	/**
+	 * Reads preset with its plugin configs from the pack.
+	 *
+	 * @return the preset, or null if the pack does not have it
+	 * @throws IOException if the record can't be read, e.g. because another client has compacted the pack since
+	 */
+	public synchronized PluginPreset read(final long id) throws IOException
+	{
+		Entry entry = entries.get(id);
+		if (entry == null)
+		{
+			return null;
+		}
+
+		ByteBuffer payload;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			payload = readPayload(channel, channel.size(), entry.offset, PUT);
+		}
+		if (payload == null)
+		{
+			throw new IOException("Preset pack record is broken");
+		}
+
+		PresetFile header = readHeader(payload);
+		return PresetBinaryFormat.read(slice(payload, payload.position(), (int) header.getSize()));
+	}
+
+	/**
+	 * Appends preset to the pack, replacing the preset with same id.
+	 *
+	 * @param header header of the preset, with the size and hash of the body
+	 * @param body   preset in binary format
+	 * @return true if the preset was written
+	 */
+	@SneakyThrows
+	public synchronized boolean put(final PresetFile header, final byte[] body)
+	{
+		ByteArrayOutputStream payload = new ByteArrayOutputStream(body.length + 64);
+		DataOutputStream out = new DataOutputStream(payload);
+		out.writeLong(header.getId());
+		writeString(out, header.getName());
+		Keybind keybind = header.getKeybind();
+		out.writeBoolean(keybind != null);
+		if (keybind != null)
+		{
+			out.writeInt(keybind.getKeyCode());
+			out.writeInt(keybind.getModifiers());
+		}
+		writeBoolean(out, header.getLoadOnFocus());
+		writeBoolean(out, header.getAutoUpdated());
+		out.writeBoolean(header.isCustomSettings());
+		writeString(out, header.getHash());
+		out.writeInt(body.length);
+		out.write(body);
+
+		byte[] record = createRecord(PUT, payload.toByteArray());
+		long offset = append(record);
+		if (offset < 0)
+		{
+			return false;
+		}
+
+		removeEntry(header.getId());
+		addEntry(header, offset, record.length);
+		return true;
+	}
+
+	/**
+	 * Appends delete record of the preset, if the pack has it.
+	 *
+	 * @return true if the pack no longer has the preset
+	 */
+	public synchronized boolean delete(final long id)
+	{
+		if (!entries.containsKey(id))
+		{
+			return true;
+		}
+
+		byte[] record = createRecord(DELETE, ByteBuffer.allocate(Long.BYTES).putLong(id).array());
+		if (append(record) < 0)
+		{
+			return false;
+		}
+
+		removeEntry(id);
+		return true;
+	}
+
+	/**
+	 * Deletes the pack file, once its presets have been moved elsewhere.
+	 */
+	public synchronized void deleteFile()
+	{
+		try (FileChannel lock = lock())
+		{
+			if (file.isFile() && isChangedSinceKnown(file.length()))
+			{
+				// Another client has written presets to the pack since, they are loaded before the pack is deleted
+				try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+				{
+					reread(channel);
+				}
+				return;
+			}
+
+			if (file.exists() && !file.delete())
+			{
+				log.warn(String.format("Could not delete %s", file.getName()));
+				return;
+			}
+
+			entries.clear();
+			liveBytes = 0;
+			validLength = 0;
+			rememberFile();
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to delete %s, %s", file.getAbsolutePath(), e.getMessage()));
+		}
+	}
+
+	/**
+	 * Compacts the pack if most of it is replaced or deleted records.
+	 */
+	public synchronized void compactIfNeeded()
+	{
+		long garbage = validLength - FILE_HEADER_LENGTH - liveBytes;
+		if (validLength > 0 && garbage >= MIN_COMPACTION_GARBAGE && garbage > liveBytes)
+		{
+			compact();
+		}
+	}
+
+	/**
+	 * Writes the live records and an index of them to a new file, which is then moved over the pack.
+	 */
+	private void compact()
+	{
+		File tempFile = null;
+		try (FileChannel lock = lock();
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			if (isChangedSinceKnown(channel.size()))
+			{
+				// Compacted on a later write, once this client knows the records of the other client
+				reread(channel);
+				return;
+			}
+
+			ByteArrayOutputStream packed = new ByteArrayOutputStream((int) (FILE_HEADER_LENGTH + liveBytes) + 64 + entries.size() * 16);
+			packed.write(MAGIC, 0, MAGIC.length);
+			packed.write(new byte[Long.BYTES], 0, Long.BYTES); // Index offset is filled in once the index is written
+
+			Map<Long, Entry> compactedEntries = new LinkedHashMap<>();
+			ByteBuffer index = ByteBuffer.allocate(Integer.BYTES + entries.size() * 2 * Long.BYTES);
+			index.putInt(entries.size());
+			for (Entry entry : entries.values())
+			{
+				long offset = packed.size();
+				byte[] record = read(channel, entry.offset, entry.length).array();
+				packed.write(record, 0, record.length);
+				compactedEntries.put(entry.header.getId(), new Entry(entry.header, offset, entry.length));
+				index.putLong(entry.header.getId()).putLong(offset);
+			}
+
+			long indexOffset = packed.size();
+			byte[] indexRecord = createRecord(INDEX, index.array());
+			packed.write(indexRecord, 0, indexRecord.length);
+
+			byte[] compacted = packed.toByteArray();
+			ByteBuffer.wrap(compacted).putLong(MAGIC.length, indexOffset);
+
+			tempFile = File.createTempFile("." + file.getName() + ".", ".tmp", file.getParentFile());
+			try (FileOutputStream outputStream = new FileOutputStream(tempFile))
+			{
+				outputStream.write(compacted);
+				outputStream.getFD().sync();
+			}
+
+			PluginPresetsStorage.moveFile(tempFile, file);
+
+			entries.clear();
+			entries.putAll(compactedEntries);
+			validLength = compacted.length;
+			rememberFile();
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to compact %s, %s", file.getAbsolutePath(), e.getMessage()));
+
+			if (tempFile != null && tempFile.exists() && !tempFile.delete())
+			{
+				log.warn(String.format("Could not delete %s", tempFile.getName()));
+			}
+		}
+	}
+
+	/**
+	 * Writes record at the end of the last valid record, creating the file if needed.
+	 *
+	 * @return offset of the record, or -1 if it could not be written
+	 */
+	private long append(final byte[] record)
+	{
+		try (FileChannel lock = lock();
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE))
+		{
+			if (isChangedSinceKnown(channel.size()))
+			{
+				reread(channel);
+			}
+
+			if (validLength < 0)
+			{
+				throw new IOException("Preset pack can't be read");
+			}
+
+			if (validLength == 0)
+			{
+				writeFully(channel, ByteBuffer.allocate(FILE_HEADER_LENGTH).put(MAGIC).putLong(0), 0);
+				validLength = FILE_HEADER_LENGTH;
+			}
+			else if (channel.size() > validLength)
+			{
+				// Records that failed their checks, left by a client that crashed in the middle of a write
+				channel.truncate(validLength);
+			}
+
+			long offset = validLength;
+			writeFully(channel, ByteBuffer.wrap(record), offset);
+			channel.force(false);
+
+			validLength = offset + record.length;
+			return offset;
+		}
+		catch (IOException e)
+		{
+			log.warn(String.format("Failed to write %s, %s", file.getAbsolutePath(), e.getMessage()));
+			return -1;
+		}
+		finally
+		{
+			rememberFile();
+		}
+	}
+
+	private static void writeFully(final FileChannel channel, final ByteBuffer buffer, long position) throws IOException
+	{
+		buffer.rewind();
+		while (buffer.hasRemaining())
+		{
+			position += channel.write(buffer, position);
+		}
+	}
+
+	/**
+	 * @return buffer with the given bytes of the file
+	 * @throws EOFException if the file ends before the bytes
+	 */
+	private static ByteBuffer read(final FileChannel channel, long position, final int length) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining())
+		{
+			int read = channel.read(buffer, position);
+			if (read < 0)
+			{
+				throw new EOFException("Preset pack ended unexpectedly");
+			}
+			position += read;
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Locks the pack against writes of other clients, until the returned channel is closed.
+	 */
+	private FileChannel lock() throws IOException
+	{
+		FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try
+		{
+			channel.lock();
+			return channel;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+
+	private boolean isChangedSinceKnown(final long size)
+	{
+		return size != knownLength || file.lastModified() != knownLastModified;
+	}
+
+	/**
+	 * Reads the records of the pack again under the lock, after another client has changed it.
+	 */
+	private void reread(final FileChannel channel) throws IOException
+	{
+		entries.clear();
+		liveBytes = 0;
+		validLength = -1;
+
+		// Empty file was just created by this client
+		long size = channel.size();
+		changedByOthers = changedByOthers || size > 0;
+		validLength = size == 0 ? 0 : readRecords(channel, size);
+		rememberFile();
+	}
+
+	private void rememberFile()
+	{
+		knownLength = file.length();
+		knownLastModified = file.lastModified();
+	}
+
+	private void addEntry(final PresetFile header, final long offset, final int length)
+	{
+		removeEntry(header.getId());
+		entries.put(header.getId(), new Entry(header, offset, length));
+		liveBytes += length;
+	}
+
+	private void removeEntry(final long id)
+	{
+		Entry entry = entries.remove(id);
+		if (entry != null)
+		{
+			liveBytes -= entry.length;
+		}
+	}
+
+	private static byte[] createRecord(final byte type, final byte[] payload)
+	{
+		CRC32 checksum = new CRC32();
+		checksum.update(payload, 0, payload.length);
+
+		return ByteBuffer.allocate(RECORD_HEADER_LENGTH + payload.length)
+			.put(type)
+			.putInt(payload.length)
+			.putInt((int) checksum.getValue())
+			.put(payload)
+			.array();
+	}
+
+	/**
+	 * @param type type the record must have, or 0 for any type
+	 * @return type, payload length and checksum of the record at offset, or null if the record is cut short or of another type
+	 */
+	private static ByteBuffer readRecordHeader(final FileChannel channel, final long size, final long offset, final byte type)
+		throws IOException
+	{
+		if (offset < 0 || offset > size - RECORD_HEADER_LENGTH)
+		{
+			return null;
+		}
+
+		ByteBuffer recordHeader = read(channel, offset, RECORD_HEADER_LENGTH);
+		int length = recordHeader.getInt(1);
+		if ((type != 0 && recordHeader.get(0) != type) || length < 0 || length > size - offset - RECORD_HEADER_LENGTH)
+		{
+			return null;
+		}
+		return recordHeader;
+	}
+
+	/**
+	 * @param type type the record must have, or 0 for any type
+	 * @return payload of the record at offset, or null if the record is cut short, broken or of another type
+	 */
+	private static ByteBuffer readPayload(final FileChannel channel, final long size, final long offset, final byte type)
+		throws IOException
+	{
+		ByteBuffer recordHeader = readRecordHeader(channel, size, offset, type);
+		return recordHeader != null ? readPayload(channel, offset, recordHeader) : null;
+	}
+
+	/**
+	 * @return payload of the record at offset, or null if it does not match the checksum in the record header
+	 */
+	private static ByteBuffer readPayload(final FileChannel channel, final long offset, final ByteBuffer recordHeader)
+		throws IOException
+	{
+		ByteBuffer payload = read(channel, offset + RECORD_HEADER_LENGTH, recordHeader.getInt(1));
+		CRC32 checksum = new CRC32();
+		checksum.update(payload.array(), 0, payload.limit());
+		return recordHeader.getInt(5) == (int) checksum.getValue() ? payload : null;
+	}
+
+	private static ByteBuffer slice(final ByteBuffer data, final long offset, final int length)
+	{
+		ByteBuffer slice = data.duplicate();
+		slice.position((int) offset);
+		slice.limit((int) offset + length);
+		return slice.slice();
+	}
+
+	private static byte[] getBytes(final ByteBuffer data, final long offset, final byte[] bytes)
+	{
+		slice(data, offset, bytes.length).get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Reads header of put record without its body, reading only the start of the record when the header fits in it.
+	 */
+	private PresetFile readHeader(final FileChannel channel, final long offset, final int payloadLength) throws IOException
+	{
+		if (payloadLength > HEADER_READ_LENGTH)
+		{
+			ByteBuffer payloadStart = read(channel, offset + RECORD_HEADER_LENGTH, HEADER_READ_LENGTH);
+			try
+			{
+				return readHeader(payloadStart, payloadLength);
+			}
+			catch (BufferUnderflowException e)
+			{
+				// Header is longer than the part that was read
+			}
+		}
+
+		return readHeader(read(channel, offset + RECORD_HEADER_LENGTH, payloadLength));
+	}
+
+	/**
+	 * Reads header of put record, leaving the payload at the start of the body.
+	 */
+	private PresetFile readHeader(final ByteBuffer payload) throws IOException
+	{
+		try
+		{
+			return readHeader(payload, payload.limit());
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new IOException("Preset pack record has a broken header", e);
+		}
+	}
+
+	/**
+	 * @param payload       whole payload of the record, or the start of it
+	 * @param payloadLength length of the whole payload
+	 * @throws BufferUnderflowException if the header does not fit in the given payload
+	 */
+	private PresetFile readHeader(final ByteBuffer payload, final int payloadLength) throws IOException
+	{
+		try
+		{
+			long id = payload.getLong();
+			String name = readString(payload);
+			Keybind keybind = payload.get() != 0 ? new Keybind(payload.getInt(), payload.getInt()) : null;
+			Boolean loadOnFocus = readBoolean(payload);
+			Boolean autoUpdated = readBoolean(payload);
+			boolean customSettings = payload.get() != 0;
+			String hash = readString(payload);
+			int bodyLength = payload.getInt();
+			if (bodyLength < 0 || bodyLength > payloadLength - payload.position())
+			{
+				throw new IOException("Preset pack record has a broken body");
+			}
+			return new PresetFile(file.getName(), id, name, keybind, loadOnFocus, autoUpdated, customSettings, hash, bodyLength, 0);
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw e;
+		}
+		catch (RuntimeException e)
+		{
+			throw new IOException("Preset pack record has a broken header", e);
+		}
+	}
+
+	private static void writeString(final DataOutputStream out, final String string) throws IOException
+	{
+		if (string == null)
+		{
+			out.writeInt(-1);
+			return;
+		}
+
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(final ByteBuffer in)
+	{
+		int length = in.getInt();
+		if (length < 0)
+		{
+			return null;
+		}
+		if (length > in.remaining())
+		{
+			throw new BufferUnderflowException();
+		}
+
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeBoolean(final DataOutputStream out, final Boolean value) throws IOException
+	{
+		out.writeByte(value == null ? 0 : value ? 2 : 1);
+	}
+
+	private static Boolean readBoolean(final ByteBuffer in)
+	{
+		byte value = in.get();
+		return value == 0 ? null : value == 2;
+	}
+
+	/**
+	 * Live record of a preset in the file.
+	 */
+	@AllArgsConstructor
+	private static class Entry
+	{
+		private final PresetFile header;
+		private final long offset;
+		private final int length;
+	}
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes preset snapshots to disk on a single background thread, so that saving never blocks the caller.
+ * Saves made while an earlier write is still waiting are coalesced, only the latest version of each preset gets written.
+ */
+@Slf4j
+public class PresetPersister
+{
+	private final ThreadPoolExecutor executor;
+	private final Consumer<List<PluginPreset>> writer;
+
+	private List<PluginPreset> pendingPresets;
+	private CompletableFuture<Void> pendingWrite;
+
+	/**
+	 * @param writer writes the given local presets to disk, always called from the same background thread
+	 */
+	public PresetPersister(Consumer<List<PluginPreset>> writer)
+	{
+		this.writer = writer;
+
+		// Thread is only kept around while there is something to write
+		executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable ->
+		{
+			Thread thread = new Thread(runnable, "PresetPersister");
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Queues presets to be written, replacing any presets still waiting to be written.
+	 *
+	 * @param presetSnapshots copies of all local presets that are not changed after this call
+	 * @return future completed once the presets are written
+	 */
+	public synchronized CompletableFuture<Void> save(List<PluginPreset> presetSnapshots)
+	{
+		pendingPresets = presetSnapshots;
+
+		if (pendingWrite == null)
+		{
+			pendingWrite = CompletableFuture.runAsync(this::writePending, executor);
+		}
+
+		return pendingWrite;
+	}
+
+	/**
+	 * @return future completed once every preset saved before this call is written
+	 */
+	public synchronized CompletableFuture<Void> flush()
+	{
+		if (pendingWrite != null)
+		{
+			return pendingWrite;
+		}
+
+		// Completes after a write that may be running right now
+		return CompletableFuture.runAsync(() ->
+		{
+		}, executor);
+	}
+
+	/**
+	 * Runs task on the persister thread, once every preset saved before this call is written.
+	 *
+	 * @return future completed with the result of the task
+	 */
+	public <T> CompletableFuture<T> submit(Callable<T> task)
+	{
+		CompletableFuture<T> result = new CompletableFuture<>();
+		executor.execute(() ->
+		{
+			try
+			{
+				result.complete(task.call());
+			}
+			catch (Exception e)
+			{
+				result.completeExceptionally(e);
+			}
+		});
+		return result;
+	}
+
+	private void writePending()
+	{
+		final List<PluginPreset> presets;
+
+		synchronized (this)
+		{
+			presets = pendingPresets;
+			pendingPresets = null;
+			pendingWrite = null;
+		}
+
+		try
+		{
+			writer.accept(presets);
+		}
+		catch (RuntimeException e)
+		{
+			log.warn("Failed to write presets", e);
+		}
+	}
+}
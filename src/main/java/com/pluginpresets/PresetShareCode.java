@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import lombok.SneakyThrows;
+
+/**
+ * Share codes are presets in a form that fits in chat messages and pastebins: "PPS" followed by base64url encoded
+ * version byte, CRC32 checksum of the compressed data and the deflate compressed preset json.
+ */
+public class PresetShareCode
+{
+	private static final String PREFIX = "PPS";
+
+	private static final byte VERSION = 1;
+
+	/**
+	 * Version byte and checksum.
+	 */
+	private static final int HEADER_LENGTH = 5;
+
+	/**
+	 * Limit for decompressed preset json, so that a malicious code can not fill the memory.
+	 */
+	private static final int MAX_JSON_SIZE = 16 * 1024 * 1024;
+
+	/**
+	 * Limit for code length, checked before the code is decoded.
+	 */
+	private static final int MAX_CODE_LENGTH = 4 * 1024 * 1024;
+
+	/**
+	 * Checks if text looks like a share code instead of json.
+	 */
+	public static boolean isShareCode(final String text)
+	{
+		return text.trim().startsWith(PREFIX);
+	}
+
+	@SneakyThrows
+	public static String write(final Gson gson, final PluginPreset preset)
+	{
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.write(new byte[HEADER_LENGTH], 0, HEADER_LENGTH); // Filled in once the data is compressed
+
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+		try (Writer writer = new OutputStreamWriter(new DeflaterOutputStream(data, deflater), StandardCharsets.UTF_8))
+		{
+			gson.toJson(preset, PluginPreset.class, writer);
+		}
+		finally
+		{
+			deflater.end();
+		}
+
+		ByteBuffer code = ByteBuffer.wrap(data.toByteArray());
+		CRC32 checksum = new CRC32();
+		checksum.update(code.array(), HEADER_LENGTH, code.capacity() - HEADER_LENGTH);
+		code.put(VERSION);
+		code.putInt((int) checksum.getValue());
+
+		return PREFIX + Base64.getUrlEncoder().withoutPadding().encodeToString(code.array());
+	}
+
+	/**
+	 * Checks the share code and returns stream of the decompressed preset json.
+	 *
+	 * @throws IOException if the code is corrupted, from an unknown version or its json is too large
+	 */
+	public static InputStream read(final String shareCode) throws IOException
+	{
+		// Chat and pastebins may wrap long codes to multiple lines
+		String text = shareCode.replaceAll("\\s", "");
+		if (!text.startsWith(PREFIX))
+		{
+			throw new IOException("Not a share code");
+		}
+		if (text.length() > MAX_CODE_LENGTH)
+		{
+			throw new IOException("Share code is too long");
+		}
+
+		byte[] code;
+		try
+		{
+			code = Base64.getUrlDecoder().decode(text.substring(PREFIX.length()));
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException("Share code is not valid base64", e);
+		}
+
+		if (code.length <= HEADER_LENGTH)
+		{
+			throw new IOException("Share code is too short");
+		}
+
+		ByteBuffer header = ByteBuffer.wrap(code, 0, HEADER_LENGTH);
+		byte version = header.get();
+		if (version != VERSION)
+		{
+			throw new IOException("Unknown share code version " + version);
+		}
+
+		CRC32 checksum = new CRC32();
+		checksum.update(code, HEADER_LENGTH, code.length - HEADER_LENGTH);
+		if (header.getInt() != (int) checksum.getValue())
+		{
+			throw new IOException("Share code checksum does not match, the code is corrupted");
+		}
+
+		InputStream json = new InflaterInputStream(new ByteArrayInputStream(code, HEADER_LENGTH, code.length - HEADER_LENGTH));
+		return new SizeLimitedInputStream(json, MAX_JSON_SIZE);
+	}
+
+	/**
+	 * Fails instead of silently stopping when the limit is reached, so that a truncated preset is never imported.
+	 */
+	private static class SizeLimitedInputStream extends FilterInputStream
+	{
+		private long remaining;
+
+		SizeLimitedInputStream(final InputStream in, final long limit)
+		{
+			super(in);
+			this.remaining = limit;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			int b = super.read();
+			if (b != -1)
+			{
+				count(1);
+			}
+			return b;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException
+		{
+			int read = super.read(b, off, len);
+			if (read > 0)
+			{
+				count(read);
+			}
+			return read;
+		}
+
+		@Override
+		public long skip(final long n) throws IOException
+		{
+			long skipped = super.skip(n);
+			count(skipped);
+			return skipped;
+		}
+
+		private void count(final long bytes) throws IOException
+		{
+			remaining -= bytes;
+			if (remaining < 0)
+			{
+				throw new IOException("Share code preset is larger than " + MAX_JSON_SIZE + " bytes");
+			}
+		}
+	}
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import net.runelite.client.config.Keybind;
+
+/**
+ * Streaming type adapters for the preset model, so that presets are read and written without reflection.
+ * Fields are written with the same names and in the same order as reflection would, so the json stays the same.
+ * <p>
+ * Storage status of a preset is never written, it is set from where the preset is loaded from.
+ * So presets are written as they are, without clearing the status from the preset first.
+ */
+public class PresetTypeAdapters
+{
+	public static final TypeAdapter<Keybind> KEYBIND = new TypeAdapter<Keybind>()
+	{
+		@Override
+		public void write(JsonWriter out, Keybind keybind) throws IOException
+		{
+			if (keybind == null)
+			{
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			out.name("keyCode").value(keybind.getKeyCode());
+			out.name("modifiers").value(keybind.getModifiers());
+			out.endObject();
+		}
+
+		@Override
+		public Keybind read(JsonReader in) throws IOException
+		{
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				return null;
+			}
+
+			int keyCode = 0;
+			int modifiers = 0;
+
+			in.beginObject();
+			while (in.hasNext())
+			{
+				switch (in.nextName())
+				{
+					case "keyCode":
+						keyCode = readInt(in, keyCode);
+						break;
+					case "modifiers":
+						modifiers = readInt(in, modifiers);
+						break;
+					default:
+						in.skipValue();
+				}
+			}
+			in.endObject();
+
+			return new Keybind(keyCode, modifiers);
+		}
+	};
+
+	public static final TypeAdapter<PluginSetting> PLUGIN_SETTING = new TypeAdapter<PluginSetting>()
+	{
+		@Override
+		public void write(JsonWriter out, PluginSetting setting) throws IOException
+		{
+			if (setting == null)
+			{
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			out.name("name").value(setting.getName());
+			out.name("key").value(setting.getKey());
+			out.name("value").value(setting.getValue());
+			out.name("customConfigName").value(setting.getCustomConfigName());
+			out.name("configName").value(setting.getConfigName());
+			out.endObject();
+		}
+
+		@Override
+		public PluginSetting read(JsonReader in) throws IOException
+		{
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				return null;
+			}
+
+			PluginSetting setting = new PluginSetting(null, null, null, null, null);
+
+			in.beginObject();
+			while (in.hasNext())
+			{
+				switch (in.nextName())
+				{
+					case "name":
+						setting.setName(readString(in));
+						break;
+					case "key":
+						setting.setKey(readString(in));
+						break;
+					case "value":
+						setting.setValue(readString(in));
+						break;
+					case "customConfigName":
+						setting.setCustomConfigName(readString(in));
+						break;
+					case "configName":
+						setting.setConfigName(readString(in));
+						break;
+					default:
+						in.skipValue();
+				}
+			}
+			in.endObject();
+
+			return setting;
+		}
+	};
+
+	public static final TypeAdapter<PluginConfig> PLUGIN_CONFIG = new TypeAdapter<PluginConfig>()
+	{
+		@Override
+		public void write(JsonWriter out, PluginConfig config) throws IOException
+		{
+			if (config == null)
+			{
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			out.name("name").value(config.getName());
+			out.name("configName").value(config.getConfigName());
+			out.name("enabled").value(config.getEnabled());
+			out.name("settings");
+			writeList(out, config.getSettings(), PLUGIN_SETTING);
+			out.endObject();
+		}
+
+		@Override
+		public PluginConfig read(JsonReader in) throws IOException
+		{
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				return null;
+			}
+
+			PluginConfig config = new PluginConfig(null, null, null, null);
+
+			in.beginObject();
+			while (in.hasNext())
+			{
+				switch (in.nextName())
+				{
+					case "name":
+						config.setName(readString(in));
+						break;
+					case "configName":
+						config.setConfigName(readString(in));
+						break;
+					case "enabled":
+						config.setEnabled(readBoolean(in));
+						break;
+					case "settings":
+						config.setSettings(readList(in, PLUGIN_SETTING));
+						break;
+					default:
+						in.skipValue();
+				}
+			}
+			in.endObject();
+
+			return config;
+		}
+	};
+
+	public static final TypeAdapter<PluginPreset> PLUGIN_PRESET = new TypeAdapter<PluginPreset>()
+	{
+		@Override
+		public void write(JsonWriter out, PluginPreset preset) throws IOException
+		{
+			if (preset == null)
+			{
+				out.nullValue();
+				return;
+			}
+
+			out.beginObject();
+			out.name("id").value(preset.getId());
+			out.name("name").value(preset.getName());
+			out.name("keybind");
+			KEYBIND.write(out, preset.getKeybind());
+			out.name("loadOnFocus").value(preset.getLoadOnFocus());
+			out.name("autoUpdated").value(preset.getAutoUpdated());
+			out.name("pluginConfigs");
+			writeList(out, preset.getPluginConfigs(), PLUGIN_CONFIG);
+			out.endObject();
+		}
+
+		@Override
+		public PluginPreset read(JsonReader in) throws IOException
+		{
+			if (in.peek() == JsonToken.NULL)
+			{
+				in.nextNull();
+				return null;
+			}
+
+			// Fields missing from json are left empty, like reflection would leave them
+			PluginPreset preset = new PluginPreset(null);
+			preset.setId(0);
+			preset.setLocal(null);
+			preset.setPluginConfigs(null);
+
+			in.beginObject();
+			while (in.hasNext())
+			{
+				switch (in.nextName())
+				{
+					case "id":
+						preset.setId(readLong(in, preset.getId()));
+						break;
+					case "name":
+						preset.setName(readString(in));
+						break;
+					case "keybind":
+						preset.setKeybind(KEYBIND.read(in));
+						break;
+					case "local":
+						preset.setLocal(readBoolean(in));
+						break;
+					case "loadOnFocus":
+						preset.setLoadOnFocus(readBoolean(in));
+						break;
+					case "autoUpdated":
+						preset.setAutoUpdated(readBoolean(in));
+						break;
+					case "pluginConfigs":
+						preset.setPluginConfigs(readList(in, PLUGIN_CONFIG));
+						break;
+					default:
+						in.skipValue();
+				}
+			}
+			in.endObject();
+
+			return preset;
+		}
+	};
+
+	/**
+	 * @return copy of the given Gson with the preset model adapters registered
+	 */
+	public static Gson register(Gson gson)
+	{
+		return gson.newBuilder()
+			.registerTypeAdapter(Keybind.class, KEYBIND)
+			.registerTypeAdapter(PluginSetting.class, PLUGIN_SETTING)
+			.registerTypeAdapter(PluginConfig.class, PLUGIN_CONFIG)
+			.registerTypeAdapter(PluginPreset.class, PLUGIN_PRESET)
+			.create();
+	}
+
+	private static <T> void writeList(JsonWriter out, List<T> list, TypeAdapter<T> adapter) throws IOException
+	{
+		if (list == null)
+		{
+			out.nullValue();
+			return;
+		}
+
+		out.beginArray();
+		for (T element : list)
+		{
+			adapter.write(out, element);
+		}
+		out.endArray();
+	}
+
+	private static <T> List<T> readList(JsonReader in, TypeAdapter<T> adapter) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+
+		List<T> list = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext())
+		{
+			list.add(adapter.read(in));
+		}
+		in.endArray();
+		return list;
+	}
+
+	private static String readString(JsonReader in) throws IOException
+	{
+		JsonToken token = in.peek();
+		if (token == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+		if (token == JsonToken.BOOLEAN)
+		{
+			return Boolean.toString(in.nextBoolean());
+		}
+		return in.nextString();
+	}
+
+	private static Boolean readBoolean(JsonReader in) throws IOException
+	{
+		JsonToken token = in.peek();
+		if (token == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+		if (token == JsonToken.STRING)
+		{
+			return Boolean.parseBoolean(in.nextString());
+		}
+		return in.nextBoolean();
+	}
+
+	private static long readLong(JsonReader in, long defaultValue) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return defaultValue;
+		}
+
+		try
+		{
+			return in.nextLong();
+		}
+		catch (NumberFormatException e)
+		{
+			throw new JsonSyntaxException(e);
+		}
+	}
+
+	private static int readInt(JsonReader in, int defaultValue) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return defaultValue;
+		}
+
+		try
+		{
+			return in.nextInt();
+		}
+		catch (NumberFormatException e)
+		{
+			throw new JsonSyntaxException(e);
+		}
+	}
+}
@@ -39,6 +39,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import javax.swing.BoxLayout;
 import javax.swing.JCheckBox;
 import javax.swing.JLabel;
@@ -369,6 +370,7 @@ public class ConfigPanel extends JPanel
 		ArrayList<String> loopedInvalidConfigurations = new ArrayList<>();
 		String configName = currentConfig.getConfigName();
 		List<String> keys = currentConfig.getSettingKeys();
+		Map<String, PluginSetting> presetSettingsByKey = presetHasConfigurations ? presetConfig.getSettingsByKey() : null;
 
 		currentConfig.getSettings().forEach(currentSetting ->
 		{
@@ -376,7 +378,7 @@ public class ConfigPanel extends JPanel
 			if (presetHasConfigurations)
 			{
 				assert presetConfig != null;
-				presetSetting = presetConfig.getSetting(currentSetting);
+				presetSetting = presetSettingsByKey.get(currentSetting.getKey());
 			}
 			else
 			{
@@ -24,12 +24,13 @@
  */
 package com.pluginpresets.ui;
 
-import com.pluginpresets.CurrentConfigurations;
 import com.pluginpresets.CustomSetting;
 import com.pluginpresets.PluginConfig;
 import com.pluginpresets.PluginPreset;
 import com.pluginpresets.PluginPresetsPlugin;
 import com.pluginpresets.PluginPresetsPresetEditor;
+import com.pluginpresets.PresetFileFormat;
+import com.pluginpresets.PresetStorageBackend;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
@@ -44,13 +45,16 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Collectors;
 import javax.swing.Box;
+import javax.swing.ButtonGroup;
 import javax.swing.Icon;
 import javax.swing.JComboBox;
 import javax.swing.JLabel;
+import javax.swing.JMenu;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
+import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollPane;
 import javax.swing.ScrollPaneConstants;
 import javax.swing.border.EmptyBorder;
@@ -498,7 +502,7 @@ public class PluginPresetsPluginPanel extends PluginPanel
 		List<PluginPreset> presets = plugin.getPluginPresets();
 		for (PluginPreset p : presets)
 		{
-			if (p.getLoadOnFocus() != null && !p.getPluginConfigs().isEmpty())
+			if (p.getLoadOnFocus() != null && !p.isEmpty())
 			{
 				return true;
 			}
@@ -549,11 +553,9 @@ public class PluginPresetsPluginPanel extends PluginPanel
 		editTitle.setText("Editing " + editedPreset.getName());
 		searchBar.requestFocusInWindow();
 
-		CurrentConfigurations currentConfigurations = plugin.getCurrentConfigurations();
-		List<PluginConfig> configurations = currentConfigurations.getPluginConfigs();
-
+		// Own view of current configs, the snapshot itself is never changed
 		// Only show custom configs that are saved to edited preset
-		filterCustomConfigs(configurations);
+		List<PluginConfig> configurations = filterCustomConfigs(plugin.getCurrentConfigurations().getPluginConfigs());
 
 		// Add configurations that are in the preset but not in current configurations
 		// e.g. preset is from a friend and the preset has settings
@@ -567,8 +569,6 @@ public class PluginPresetsPluginPanel extends PluginPanel
 		List<PluginConfig> filteredConfigs = filterConfigurations(filter, configurations);
 		List<String> filterConfigNames = filteredConfigs.stream().map(PluginConfig::getName).collect(Collectors.toList());
 
-		plugin.updateCurrentConfigurations();
-
 		if (filteredConfigs.isEmpty() || keywordFilteredConfigNames.isEmpty())
 		{
 			noContent.setContent(null, "There is nothing to be shown");
@@ -597,11 +597,15 @@ public class PluginPresetsPluginPanel extends PluginPanel
 		setUpdateAllVisibility(modified);
 	}
 
-	private void filterCustomConfigs(List<PluginConfig> configurations)
+	private List<PluginConfig> filterCustomConfigs(List<PluginConfig> configurations)
 	{
 		List<CustomSetting> editedPresetCustomSettings = plugin.getCustomSettingsManager().getCustomSettingsFor(editedPreset.getId());
 		List<String> customSettingKeys = editedPresetCustomSettings.stream().map(customSetting -> customSetting.getSetting().getKey()).collect(Collectors.toList());
-		configurations.forEach(c -> c.getSettings().removeIf(setting -> setting.getCustomConfigName() != null && !customSettingKeys.contains(setting.getKey())));
+		return configurations.stream()
+			.map(c -> new PluginConfig(c.getName(), c.getConfigName(), c.getEnabled(), c.getSettings().stream()
+				.filter(setting -> setting.getCustomConfigName() == null || customSettingKeys.contains(setting.getKey()))
+				.collect(Collectors.toList())))
+			.collect(Collectors.toList());
 	}
 
 	private void addMissingConfigurations(List<PluginConfig> configurations)
@@ -905,10 +909,38 @@ public class PluginPresetsPluginPanel extends PluginPanel
 		createEmptyOption.setText("Create new preset with all settings");
 		createEmptyOption.addActionListener(e -> promptPresetCreation(false));
 
+		JMenu fileFormatOption = new JMenu();
+		fileFormatOption.setText("Preset file format");
+		ButtonGroup fileFormatGroup = new ButtonGroup();
+		for (PresetFileFormat format : PresetFileFormat.values())
+		{
+			JRadioButtonMenuItem formatOption = new JRadioButtonMenuItem();
+			formatOption.setText(format.getDisplayName());
+			formatOption.setSelected(format == plugin.getPresetFileFormat());
+			formatOption.addActionListener(e -> plugin.setPresetFileFormat(format));
+			fileFormatGroup.add(formatOption);
+			fileFormatOption.add(formatOption);
+		}
+
+		JMenu storageOption = new JMenu();
+		storageOption.setText("Preset storage");
+		ButtonGroup storageGroup = new ButtonGroup();
+		for (PresetStorageBackend backend : PresetStorageBackend.values())
+		{
+			JRadioButtonMenuItem backendOption = new JRadioButtonMenuItem();
+			backendOption.setText(backend.getDisplayName());
+			backendOption.setSelected(backend == plugin.getPresetStorageBackend());
+			backendOption.addActionListener(e -> plugin.setPresetStorageBackend(backend));
+			storageGroup.add(backendOption);
+			storageOption.add(backendOption);
+		}
+
 		JPopupMenu popupMenu = new JPopupMenu();
 		popupMenu.setBorder(new EmptyBorder(2, 2, 2, 0));
 		popupMenu.add(importOption);
 		popupMenu.add(createEmptyOption);
+		popupMenu.add(fileFormatOption);
+		popupMenu.add(storageOption);
 		return popupMenu;
 	}
 
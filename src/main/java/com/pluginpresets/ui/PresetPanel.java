@@ -44,6 +44,7 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.border.Border;
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
@@ -489,16 +490,17 @@ class PresetPanel extends JPanel
 		keybindWrapper.add(keybindActions);
 
 		shareLabel.setIcon(Icons.COPY_ICON);
-		shareLabel.setToolTipText("Copy preset to clipboard");
+		shareLabel.setToolTipText("Copy preset to clipboard as share code, right click for json");
+		shareLabel.setComponentPopupMenu(getSharePopup());
 		shareLabel.addMouseListener(new MouseAdapter()
 		{
 			@Override
 			public void mousePressed(MouseEvent mouseEvent)
 			{
-				plugin.exportPresetToClipboard(preset);
-				JOptionPane.showMessageDialog(shareLabel,
-					"Preset data of '" + preset.getName() + "' copied to clipboard.", "Preset exported",
-					JOptionPane.INFORMATION_MESSAGE);
+				if (SwingUtilities.isLeftMouseButton(mouseEvent))
+				{
+					exportPreset(false);
+				}
 			}
 
 			@Override
@@ -804,6 +806,32 @@ class PresetPanel extends JPanel
 		return popupMenu;
 	}
 
+	private JPopupMenu getSharePopup()
+	{
+		JMenuItem shareCodeOption = new JMenuItem();
+		shareCodeOption.setText("Export as share code");
+		shareCodeOption.addActionListener(e -> exportPreset(false));
+
+		JMenuItem jsonOption = new JMenuItem();
+		jsonOption.setText("Export as json");
+		jsonOption.setToolTipText("Readable preset data, also for older versions of the plugin");
+		jsonOption.addActionListener(e -> exportPreset(true));
+
+		JPopupMenu popupMenu = new JPopupMenu();
+		popupMenu.setBorder(new EmptyBorder(2, 2, 2, 0));
+		popupMenu.add(shareCodeOption);
+		popupMenu.add(jsonOption);
+		return popupMenu;
+	}
+
+	private void exportPreset(boolean json)
+	{
+		plugin.exportPresetToClipboard(preset, json);
+		JOptionPane.showMessageDialog(shareLabel,
+			"Preset data of '" + preset.getName() + "' copied to clipboard.", "Preset exported",
+			JOptionPane.INFORMATION_MESSAGE);
+	}
+
 	private JMenuItem getDivider()
 	{
 		JMenuItem divider = new JMenuItem();
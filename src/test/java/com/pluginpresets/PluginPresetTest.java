@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PluginPresetTest
+{
+	private final AtomicInteger loads = new AtomicInteger();
+	private PluginPreset preset;
+
+	@Before
+	public void setUp()
+	{
+		List<PluginConfig> storedConfigs = Collections.singletonList(config("Plugin", "plugin", true, "key", "preset"));
+
+		PresetBodyCache bodyCache = new PresetBodyCache(1, p ->
+		{
+			loads.incrementAndGet();
+			List<PluginConfig> configs = new ArrayList<>();
+			storedConfigs.forEach(config -> configs.add(config.copy()));
+			return configs;
+		}, p -> false);
+
+		preset = new PluginPreset("Preset");
+		preset.setBodyCache(bodyCache);
+		preset.setPluginConfigs(null);
+	}
+
+	@Test
+	public void mismatchIsRecheckedWithoutLoadingConfigs()
+	{
+		assertFalse(preset.match(snapshot(1, "other")));
+		assertEquals(1, loads.get());
+		preset.unloadPluginConfigs();
+
+		// Setting that did not match still does not match
+		assertFalse(preset.match(snapshot(2, "changed")));
+		assertEquals(1, loads.get());
+		assertFalse(preset.isPluginConfigsLoaded());
+
+		// Setting that did not match now matches, so the configs are checked again
+		assertTrue(preset.match(snapshot(3, "preset")));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void matchIsReusedForSameSnapshot()
+	{
+		ConfigSnapshot snapshot = snapshot(1, "preset");
+		assertTrue(preset.match(snapshot));
+		preset.unloadPluginConfigs();
+
+		assertTrue(preset.match(snapshot));
+		assertTrue(preset.canBeDisabled());
+		assertFalse(preset.isEmpty());
+		assertEquals(1, loads.get());
+
+		// Any config may have changed in a later snapshot
+		assertTrue(preset.match(snapshot(2, "preset")));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void resultOfEditedConfigsIsDroppedOnUnload()
+	{
+		assertFalse(preset.match(snapshot(1, "other")));
+
+		// Edited after the check, so the result no longer tells anything about the configs
+		preset.getPluginConfigs().get(0).getSettings().get(0).setValue("other");
+		preset.unloadPluginConfigs();
+
+		assertFalse(preset.match(snapshot(1, "other")));
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void nothingMatchesBeforeConfigsAreRead()
+	{
+		PluginPreset emptyPreset = new PluginPreset("Empty");
+
+		assertFalse(emptyPreset.match(ConfigSnapshot.EMPTY));
+		assertFalse(preset.match(ConfigSnapshot.EMPTY));
+		assertEquals(0, loads.get());
+	}
+
+	private static ConfigSnapshot snapshot(long generation, String value)
+	{
+		return new ConfigSnapshot(generation, Arrays.asList(
+			config("Plugin", "plugin", true, "key", value),
+			config("Other", "other", false, "key", "value")));
+	}
+
+	private static PluginConfig config(String name, String configName, boolean enabled, String key, String value)
+	{
+		List<PluginSetting> settings = new ArrayList<>();
+		settings.add(new PluginSetting(key, key, value, null, configName));
+		return new PluginConfig(name, configName, enabled, settings);
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import net.runelite.client.config.Keybind;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class PresetBinaryFormatTest
+{
+	private final Gson gson = PresetTypeAdapters.register(new Gson());
+
+	@Test
+	public void roundTrip() throws IOException
+	{
+		PluginPreset preset = PresetTypeAdaptersTest.createLargePreset(50, 20);
+
+		assertSamePreset(preset, roundTrip(preset));
+	}
+
+	@Test
+	public void roundTripOfNullableBooleans() throws IOException
+	{
+		for (Boolean value : Arrays.asList(null, false, true))
+		{
+			PluginPreset preset = PresetTypeAdaptersTest.createLargePreset(1, 1);
+			preset.setLoadOnFocus(value);
+			preset.setAutoUpdated(value);
+			preset.getPluginConfigs().get(0).setEnabled(value);
+
+			PluginPreset readPreset = roundTrip(preset);
+
+			assertEquals(value, readPreset.getLoadOnFocus());
+			assertEquals(value, readPreset.getAutoUpdated());
+			assertEquals(value, readPreset.getPluginConfigs().get(0).getEnabled());
+		}
+	}
+
+	@Test
+	public void roundTripOfKeybinds() throws IOException
+	{
+		PluginPreset preset = PresetTypeAdaptersTest.createLargePreset(1, 1);
+
+		preset.setKeybind(null);
+		assertNull(roundTrip(preset).getKeybind());
+
+		for (Keybind keybind : Arrays.asList(new Keybind(0, 0), new Keybind(65, 128), new Keybind(Integer.MAX_VALUE, Integer.MIN_VALUE)))
+		{
+			preset.setKeybind(keybind);
+			Keybind readKeybind = roundTrip(preset).getKeybind();
+
+			assertEquals(keybind.getKeyCode(), readKeybind.getKeyCode());
+			assertEquals(keybind.getModifiers(), readKeybind.getModifiers());
+		}
+	}
+
+	@Test
+	public void roundTripOfMissingLists() throws IOException
+	{
+		PluginPreset preset = new PluginPreset("Preset");
+		preset.setId(-1);
+		preset.getPluginConfigs().add(new PluginConfig("Plugin", null, null, null));
+		preset.getPluginConfigs().add(new PluginConfig("Other", "other", true, new ArrayList<>()));
+
+		PluginPreset readPreset = roundTrip(preset);
+		assertEquals(-1, readPreset.getId());
+		assertNull(readPreset.getPluginConfigs().get(0).getSettings());
+		assertTrue(readPreset.getPluginConfigs().get(1).getSettings().isEmpty());
+		assertSamePreset(preset, readPreset);
+
+		preset.setPluginConfigs(null);
+		assertNull(roundTrip(preset).getPluginConfigs());
+	}
+
+	@Test
+	public void storageStatusIsNotWritten() throws IOException
+	{
+		PluginPreset preset = PresetTypeAdaptersTest.createLargePreset(1, 1);
+		preset.setLocal(true);
+
+		assertNull(roundTrip(preset).getLocal());
+	}
+
+	@Test
+	public void readsFromDirectBuffer() throws IOException
+	{
+		PluginPreset preset = PresetTypeAdaptersTest.createLargePreset(5, 5);
+		byte[] data = PresetBinaryFormat.write(preset);
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect(data.length);
+		buffer.put(data).flip();
+
+		assertSamePreset(preset, PresetBinaryFormat.read(buffer));
+	}
+
+	@Test
+	public void detectsBinaryFiles()
+	{
+		byte[] data = PresetBinaryFormat.write(new PluginPreset("Preset"));
+
+		assertTrue(PresetBinaryFormat.isBinary(Arrays.copyOf(data, PresetBinaryFormat.getMagicLength())));
+		assertFalse(PresetBinaryFormat.isBinary("{\"name\":".getBytes()));
+	}
+
+	@Test
+	public void brokenFilesFail()
+	{
+		byte[] data = PresetBinaryFormat.write(PresetTypeAdaptersTest.createLargePreset(5, 5));
+
+		for (int length : new int[]{0, 2, data.length / 2, data.length - 1})
+		{
+			assertFails(Arrays.copyOf(data, length));
+		}
+
+		byte[] wrongMagic = data.clone();
+		wrongMagic[0] = '{';
+		assertFails(wrongMagic);
+
+		// String table claims more strings than the limit
+		byte[] hugeCount = Arrays.copyOf(data, PresetBinaryFormat.getMagicLength() + 5);
+		Arrays.fill(hugeCount, PresetBinaryFormat.getMagicLength(), hugeCount.length - 1, (byte) 0xFF);
+		hugeCount[hugeCount.length - 1] = 0x7F;
+		assertFails(hugeCount);
+
+		// String table count with the sign bit set
+		byte[] negativeCount = Arrays.copyOf(data, PresetBinaryFormat.getMagicLength() + 10);
+		Arrays.fill(negativeCount, PresetBinaryFormat.getMagicLength(), negativeCount.length - 1, (byte) 0xFF);
+		negativeCount[negativeCount.length - 1] = 0x01;
+		assertFails(negativeCount);
+	}
+
+	private PluginPreset roundTrip(PluginPreset preset) throws IOException
+	{
+		return PresetBinaryFormat.read(new ByteArrayInputStream(PresetBinaryFormat.write(preset)));
+	}
+
+	private void assertSamePreset(PluginPreset expected, PluginPreset actual)
+	{
+		assertEquals(gson.toJson(expected), gson.toJson(actual));
+	}
+
+	private static void assertFails(byte[] data)
+	{
+		try
+		{
+			PresetBinaryFormat.read(new ByteArrayInputStream(data));
+			fail("Broken file of " + data.length + " bytes was read");
+		}
+		catch (IOException e)
+		{
+			// Expected
+		}
+	}
+}
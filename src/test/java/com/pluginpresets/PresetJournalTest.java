@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PresetJournalTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Gson gson = PresetTypeAdapters.register(new Gson());
+
+	private PresetJournal journal;
+	private PluginPreset preset;
+
+	@Before
+	public void setUp()
+	{
+		journal = new PresetJournal(folder.getRoot(), gson);
+		preset = PresetTypeAdaptersTest.createLargePreset(3, 2);
+		preset.setLocal(true);
+	}
+
+	@After
+	public void tearDown()
+	{
+		journal.close().join();
+	}
+
+	@Test
+	public void editsAreReplayedOnStoredPreset()
+	{
+		PluginPreset stored = preset.copy();
+		preset.getPluginConfigs().get(0).getSettings().get(0).setValue("edited");
+		preset.getPluginConfigs().remove(2);
+
+		assertTrue(journal.append(preset, Arrays.asList("Plugin 0", "Plugin 2")).join());
+		assertEquals(1, journalFiles().size());
+
+		journal.replay(Collections.singletonList(stored));
+		assertEquals(gson.toJson(preset), gson.toJson(stored));
+	}
+
+	@Test
+	public void foldKeepsEditsAfterMark()
+	{
+		PluginPreset stored = preset.copy();
+		preset.getPluginConfigs().get(0).getSettings().get(0).setValue("folded");
+		journal.append(preset, Collections.singletonList("Plugin 0"));
+		long mark = journal.mark();
+
+		preset.getPluginConfigs().get(1).getSettings().get(0).setValue("kept");
+		journal.append(preset, Collections.singletonList("Plugin 1"));
+		journal.fold(mark).join();
+		assertEquals(1, journalFiles().size());
+
+		journal.replay(Collections.singletonList(stored));
+		assertEquals("kept", stored.getPluginConfigs().get(1).getSettings().get(0).getValue());
+		assertNotEquals("folded", stored.getPluginConfigs().get(0).getSettings().get(0).getValue());
+	}
+
+	@Test
+	public void foldOfAllEditsDeletesJournal()
+	{
+		journal.append(preset, Collections.singletonList("Plugin 0"));
+		journal.fold(journal.mark()).join();
+
+		assertTrue(journalFiles().isEmpty());
+	}
+
+	@Test
+	public void editsOfRunningClientAreNotReplayed()
+	{
+		PresetJournal otherJournal = new PresetJournal(folder.getRoot(), gson);
+		try
+		{
+			PluginPreset stored = preset.copy();
+			preset.getPluginConfigs().get(0).getSettings().get(0).setValue("edited");
+			assertTrue(otherJournal.append(preset, Collections.singletonList("Plugin 0")).join());
+
+			journal.replay(Collections.singletonList(stored));
+			assertNotEquals("edited", stored.getPluginConfigs().get(0).getSettings().get(0).getValue());
+
+			// Other client folds its own edits
+			otherJournal.fold(otherJournal.mark()).join();
+			assertTrue(journalFiles().isEmpty());
+		}
+		finally
+		{
+			otherJournal.close().join();
+		}
+	}
+
+	@Test
+	public void editsLeftByClosedClientAreAdopted()
+	{
+		PresetJournal otherJournal = new PresetJournal(folder.getRoot(), gson);
+		PluginPreset stored = preset.copy();
+		preset.getPluginConfigs().get(0).getSettings().get(0).setValue("edited");
+		assertTrue(otherJournal.append(preset, Collections.singletonList("Plugin 0")).join());
+		otherJournal.close().join();
+		List<File> leftFiles = journalFiles();
+		assertEquals(1, leftFiles.size());
+
+		journal.replay(Collections.singletonList(stored));
+		assertEquals("edited", stored.getPluginConfigs().get(0).getSettings().get(0).getValue());
+
+		// Adopted edits are now in a journal of this client, and are folded by its next save
+		List<File> files = journalFiles();
+		assertEquals(1, files.size());
+		assertNotEquals(leftFiles.get(0), files.get(0));
+		journal.fold(journal.mark()).join();
+		assertTrue(journalFiles().isEmpty());
+	}
+
+	@Test
+	public void tornEditIsSkipped() throws IOException
+	{
+		PresetJournal otherJournal = new PresetJournal(folder.getRoot(), gson);
+		PluginPreset stored = preset.copy();
+		preset.getPluginConfigs().get(0).getSettings().get(0).setValue("edited");
+		otherJournal.append(preset, Collections.singletonList("Plugin 0"));
+		preset.getPluginConfigs().get(1).getSettings().get(0).setValue("torn");
+		otherJournal.append(preset, Collections.singletonList("Plugin 1"));
+		otherJournal.close().join();
+
+		File file = journalFiles().get(0);
+		byte[] data = Files.readAllBytes(file.toPath());
+		Files.write(file.toPath(), Arrays.copyOf(data, data.length - 10));
+
+		journal.replay(Collections.singletonList(stored));
+		assertEquals("edited", stored.getPluginConfigs().get(0).getSettings().get(0).getValue());
+		assertNotEquals("torn", stored.getPluginConfigs().get(1).getSettings().get(0).getValue());
+	}
+
+	private List<File> journalFiles()
+	{
+		return Arrays.asList(Objects.requireNonNull(folder.getRoot().listFiles((dir, name) -> PresetJournal.isJournalFile(name))));
+	}
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+import net.runelite.client.config.Keybind;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PresetPackTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final Gson gson = PresetTypeAdapters.register(new Gson());
+
+	private File file;
+	private PresetPack pack;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		file = new File(folder.getRoot(), "presets.pack");
+		pack = new PresetPack(file);
+		assertTrue(pack.load().isEmpty());
+	}
+
+	@Test
+	public void putAndReload() throws IOException
+	{
+		PluginPreset first = createPreset(1, "First", 5);
+		PluginPreset second = createPreset(2, "Second", 5);
+		second.setKeybind(null);
+		second.setLoadOnFocus(null);
+		assertTrue(put(first));
+		assertTrue(put(second));
+
+		PresetPack reloaded = new PresetPack(file);
+		List<PresetFile> headers = reloaded.load();
+
+		assertEquals(2, headers.size());
+		assertEquals(pack.getEntry(1), reloaded.getEntry(1));
+		assertEquals(pack.getEntry(2), reloaded.getEntry(2));
+		assertEquals(new Keybind(65, 128), reloaded.getEntry(1).getKeybind());
+		assertNull(reloaded.getEntry(2).getLoadOnFocus());
+		assertSamePreset(first, reloaded.read(1));
+		assertSamePreset(second, reloaded.read(2));
+	}
+
+	@Test
+	public void putReplacesPreset() throws IOException
+	{
+		put(createPreset(1, "Old", 5));
+		PluginPreset renamed = createPreset(1, "New", 3);
+		put(renamed);
+
+		PresetPack reloaded = new PresetPack(file);
+		assertEquals(1, reloaded.load().size());
+		assertEquals("New", reloaded.getEntry(1).getName());
+		assertSamePreset(renamed, reloaded.read(1));
+	}
+
+	@Test
+	public void deleteAndReload() throws IOException
+	{
+		put(createPreset(1, "First", 5));
+		put(createPreset(2, "Second", 5));
+		assertTrue(pack.delete(1));
+		assertTrue(pack.delete(3));
+
+		PresetPack reloaded = new PresetPack(file);
+		reloaded.load();
+
+		assertFalse(reloaded.contains(1));
+		assertNull(reloaded.read(1));
+		assertTrue(reloaded.contains(2));
+	}
+
+	@Test
+	public void compactAndReload() throws IOException
+	{
+		PluginPreset kept = createPreset(1, "Kept", 5);
+		put(kept);
+
+		// Replaced versions of the preset are garbage
+		PluginPreset replaced = null;
+		for (int i = 0; i < 20; i++)
+		{
+			replaced = createPreset(2, "Replaced " + i, 50);
+			put(replaced);
+		}
+		put(createPreset(3, "Deleted", 5));
+		pack.delete(3);
+
+		long length = file.length();
+		pack.compactIfNeeded();
+		assertTrue(file.length() < length / 5);
+		assertSamePreset(kept, pack.read(1));
+
+		// Record written after compaction is read after the index
+		PluginPreset added = createPreset(4, "Added", 5);
+		put(added);
+
+		PresetPack reloaded = new PresetPack(file);
+		assertEquals(3, reloaded.load().size());
+		assertSamePreset(kept, reloaded.read(1));
+		assertSamePreset(replaced, reloaded.read(2));
+		assertSamePreset(added, reloaded.read(4));
+		assertFalse(reloaded.contains(3));
+	}
+
+	@Test
+	public void longHeadersAreReadFromIndex() throws IOException
+	{
+		char[] name = new char[1000];
+		Arrays.fill(name, 'n');
+		PluginPreset longName = createPreset(1, new String(name), 5);
+		put(longName);
+		for (int i = 0; i < 20; i++)
+		{
+			put(createPreset(2, "Replaced " + i, 50));
+		}
+		pack.delete(2);
+		pack.compactIfNeeded();
+
+		PresetPack reloaded = new PresetPack(file);
+		assertEquals(1, reloaded.load().size());
+		assertEquals(new String(name), reloaded.getEntry(1).getName());
+		assertSamePreset(longName, reloaded.read(1));
+	}
+
+	@Test
+	public void tornTailIsDiscarded() throws IOException
+	{
+		PluginPreset first = createPreset(1, "First", 5);
+		put(first);
+		long firstEnd = file.length();
+		put(createPreset(2, "Torn", 5));
+
+		// Crash in the middle of writing the second record
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+		{
+			randomAccessFile.setLength(firstEnd + (file.length() - firstEnd) / 2);
+		}
+
+		PresetPack reloaded = new PresetPack(file);
+		assertEquals(1, reloaded.load().size());
+		assertSamePreset(first, reloaded.read(1));
+
+		// Next write replaces the torn record
+		PluginPreset third = createPreset(3, "Third", 5);
+		assertTrue(reloaded.put(header(third, PresetBinaryFormat.write(third)), PresetBinaryFormat.write(third)));
+
+		PresetPack recovered = new PresetPack(file);
+		assertEquals(2, recovered.load().size());
+		assertSamePreset(first, recovered.read(1));
+		assertSamePreset(third, recovered.read(3));
+	}
+
+	@Test
+	public void corruptedTailIsDiscarded() throws IOException
+	{
+		PluginPreset first = createPreset(1, "First", 5);
+		put(first);
+		long firstEnd = file.length();
+		put(createPreset(2, "Corrupted", 5));
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+		{
+			randomAccessFile.seek(firstEnd + (file.length() - firstEnd) / 2);
+			randomAccessFile.write(0xFF);
+		}
+
+		PresetPack reloaded = new PresetPack(file);
+		assertEquals(1, reloaded.load().size());
+		assertSamePreset(first, reloaded.read(1));
+	}
+
+	@Test
+	public void notAPackFails() throws IOException
+	{
+		assertTrue(file.createNewFile());
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+		{
+			randomAccessFile.write("{\"name\":\"Preset\"}".getBytes());
+		}
+
+		try
+		{
+			new PresetPack(file).load();
+			fail("File that is not a pack was loaded");
+		}
+		catch (IOException e)
+		{
+			// Expected
+		}
+	}
+
+	@Test
+	public void changesOfOtherClientsAreNoticed() throws IOException
+	{
+		put(createPreset(1, "First", 5));
+		assertFalse(pack.isChangedOnDisk());
+
+		PresetPack otherClient = new PresetPack(file);
+		otherClient.load();
+		PluginPreset second = createPreset(2, "Second", 5);
+		otherClient.put(header(second, PresetBinaryFormat.write(second)), PresetBinaryFormat.write(second));
+
+		assertTrue(pack.isChangedOnDisk());
+	}
+
+	@Test
+	public void writeKeepsRecordsOfOtherClients() throws IOException
+	{
+		PluginPreset first = createPreset(1, "First", 5);
+		put(first);
+
+		PresetPack otherClient = new PresetPack(file);
+		otherClient.load();
+		PluginPreset second = createPreset(2, "Second", 5);
+		assertTrue(otherClient.put(header(second, PresetBinaryFormat.write(second)), PresetBinaryFormat.write(second)));
+
+		// Record of the other client is past the end this client knows of
+		PluginPreset third = createPreset(3, "Third", 5);
+		assertTrue(put(third));
+		assertTrue(pack.isChangedOnDisk());
+
+		PresetPack reloaded = new PresetPack(file);
+		assertEquals(3, reloaded.load().size());
+		assertSamePreset(first, reloaded.read(1));
+		assertSamePreset(second, reloaded.read(2));
+		assertSamePreset(third, reloaded.read(3));
+	}
+
+	@Test
+	public void packChangedByOtherClientIsNotDeleted() throws IOException
+	{
+		put(createPreset(1, "First", 5));
+
+		PresetPack otherClient = new PresetPack(file);
+		otherClient.load();
+		PluginPreset second = createPreset(2, "Second", 5);
+		otherClient.put(header(second, PresetBinaryFormat.write(second)), PresetBinaryFormat.write(second));
+
+		pack.deleteFile();
+		assertTrue(file.exists());
+		assertTrue(pack.contains(2));
+	}
+
+	@Test
+	public void deleteFile() throws IOException
+	{
+		put(createPreset(1, "First", 5));
+		pack.deleteFile();
+
+		assertFalse(file.exists());
+		assertTrue(pack.isEmpty());
+	}
+
+	private boolean put(PluginPreset preset)
+	{
+		byte[] body = PresetBinaryFormat.write(preset);
+		return pack.put(header(preset, body), body);
+	}
+
+	private PresetFile header(PluginPreset preset, byte[] body)
+	{
+		return new PresetFile(file.getName(), preset.getId(), preset.getName(), preset.getKeybind(),
+			preset.getLoadOnFocus(), preset.getAutoUpdated(), false, "hash" + preset.getName(), body.length, 0);
+	}
+
+	private static PluginPreset createPreset(long id, String name, int configCount)
+	{
+		PluginPreset preset = PresetTypeAdaptersTest.createLargePreset(configCount, 20);
+		preset.setId(id);
+		preset.setName(name);
+		return preset;
+	}
+
+	private void assertSamePreset(PluginPreset expected, PluginPreset actual)
+	{
+		assertEquals(gson.toJson(expected), gson.toJson(actual));
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class PresetPersisterTest
+{
+	private static final long TIMEOUT_SECONDS = 5;
+
+	private final List<List<String>> writes = Collections.synchronizedList(new ArrayList<>());
+
+	@Test
+	public void savesMadeDuringAWriteAreCoalesced() throws Exception
+	{
+		CountDownLatch writeStarted = new CountDownLatch(1);
+		CountDownLatch releaseWrite = new CountDownLatch(1);
+		PresetPersister persister = new PresetPersister(presets ->
+		{
+			writeStarted.countDown();
+			await(releaseWrite);
+			writes.add(names(presets));
+		});
+
+		CompletableFuture<Void> first = persister.save(presets("a"));
+		assertTrue(writeStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+		// First write is running, these wait for it and only the latest gets written
+		CompletableFuture<Void> second = persister.save(presets("b"));
+		CompletableFuture<Void> third = persister.save(presets("c"));
+		assertSame(second, third);
+
+		releaseWrite.countDown();
+		persister.flush().get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		assertTrue(first.isDone());
+		assertTrue(third.isDone());
+		assertEquals(Collections.singletonList("a"), writes.get(0));
+		assertEquals(Collections.singletonList("c"), writes.get(1));
+		assertEquals(2, writes.size());
+	}
+
+	@Test
+	public void flushWaitsForRunningWrite() throws Exception
+	{
+		CountDownLatch writeStarted = new CountDownLatch(1);
+		CountDownLatch releaseWrite = new CountDownLatch(1);
+		PresetPersister persister = new PresetPersister(presets ->
+		{
+			writeStarted.countDown();
+			await(releaseWrite);
+			writes.add(names(presets));
+		});
+
+		persister.save(presets("a"));
+		assertTrue(writeStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+		// Nothing is pending, but the running write is not done yet
+		CompletableFuture<Void> flush = persister.flush();
+		assertFalse(flush.isDone());
+
+		releaseWrite.countDown();
+		flush.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		assertEquals(1, writes.size());
+	}
+
+	@Test
+	public void failedWriteDoesNotStopLaterWrites() throws Exception
+	{
+		PresetPersister persister = new PresetPersister(presets ->
+		{
+			if (names(presets).contains("broken"))
+			{
+				throw new IllegalStateException("Write failed");
+			}
+			writes.add(names(presets));
+		});
+
+		persister.save(presets("broken")).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		persister.save(presets("a")).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+		assertEquals(Collections.singletonList(Collections.singletonList("a")), writes);
+	}
+
+	@Test
+	public void submittedTaskRunsAfterSavedPresetsAreWritten() throws Exception
+	{
+		CountDownLatch writeStarted = new CountDownLatch(1);
+		CountDownLatch releaseWrite = new CountDownLatch(1);
+		PresetPersister persister = new PresetPersister(presets ->
+		{
+			writeStarted.countDown();
+			await(releaseWrite);
+			writes.add(names(presets));
+		});
+
+		persister.save(presets("a"));
+		assertTrue(writeStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+		persister.save(presets("b"));
+
+		// Load sees both writes, without the caller waiting for them
+		CompletableFuture<Integer> load = persister.submit(writes::size);
+		assertFalse(load.isDone());
+
+		releaseWrite.countDown();
+		assertEquals(2, (int) load.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+	}
+
+	private static List<PluginPreset> presets(String... names)
+	{
+		List<PluginPreset> presets = new ArrayList<>();
+		for (String name : names)
+		{
+			presets.add(new PluginPreset(name));
+		}
+		return presets;
+	}
+
+	private static List<String> names(List<PluginPreset> presets)
+	{
+		return presets.stream().map(PluginPreset::getName).collect(Collectors.toList());
+	}
+
+	private static void await(CountDownLatch latch)
+	{
+		try
+		{
+			latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+}
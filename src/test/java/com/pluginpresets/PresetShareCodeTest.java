@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.common.io.ByteStreams;
+import com.google.gson.Gson;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class PresetShareCodeTest
+{
+	private final Gson gson = PresetTypeAdapters.register(new Gson());
+
+	@Test
+	public void roundTrip() throws IOException
+	{
+		PluginPreset preset = PresetTypeAdaptersTest.createLargePreset(50, 20);
+
+		String shareCode = PresetShareCode.write(gson, preset);
+
+		assertTrue(PresetShareCode.isShareCode(shareCode));
+		assertEquals(gson.toJson(preset), gson.toJson(read(shareCode)));
+	}
+
+	@Test
+	public void roundTripOfWrappedCode() throws IOException
+	{
+		PluginPreset preset = PresetTypeAdaptersTest.createLargePreset(5, 5);
+		String shareCode = PresetShareCode.write(gson, preset);
+
+		// Wrapped like chat and pastebins do
+		StringBuilder wrapped = new StringBuilder("  ");
+		for (int i = 0; i < shareCode.length(); i += 40)
+		{
+			wrapped.append(shareCode, i, Math.min(i + 40, shareCode.length())).append("\r\n");
+		}
+
+		assertEquals(gson.toJson(preset), gson.toJson(read(wrapped.toString())));
+	}
+
+	@Test
+	public void jsonIsNotShareCode()
+	{
+		assertFalse(PresetShareCode.isShareCode(gson.toJson(new PluginPreset("Preset"))));
+	}
+
+	@Test
+	public void checksumMismatchFails()
+	{
+		String shareCode = PresetShareCode.write(gson, PresetTypeAdaptersTest.createLargePreset(5, 5));
+
+		// Changes a byte of the compressed data, the header stays intact
+		int position = shareCode.length() / 2;
+		char changed = shareCode.charAt(position) == 'A' ? 'B' : 'A';
+		String corrupted = shareCode.substring(0, position) + changed + shareCode.substring(position + 1);
+
+		assertFails(corrupted, "checksum");
+	}
+
+	@Test
+	public void unknownVersionFails() throws IOException
+	{
+		assertFails(createShareCode(2, "{}".getBytes(StandardCharsets.UTF_8)), "version");
+	}
+
+	@Test
+	public void tooLargeJsonFails() throws IOException
+	{
+		// Compresses to a small code, but is larger than any real preset once decompressed
+		byte[] json = new byte[17 * 1024 * 1024];
+		Arrays.fill(json, (byte) ' ');
+		String shareCode = createShareCode(1, json);
+
+		try (InputStream inputStream = PresetShareCode.read(shareCode))
+		{
+			ByteStreams.exhaust(inputStream);
+			fail("Too large share code was read");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains("larger than"));
+		}
+	}
+
+	@Test
+	public void tooLongCodeFails()
+	{
+		char[] code = new char[4 * 1024 * 1024 + 1];
+		Arrays.fill(code, 'A');
+		code[0] = 'P';
+		code[1] = 'P';
+		code[2] = 'S';
+
+		assertFails(new String(code), "too long");
+	}
+
+	@Test
+	public void invalidCodesFail()
+	{
+		assertFails("{}", "Not a share code");
+		assertFails("PPS", "too short");
+		assertFails("PPS!!!!", "base64");
+	}
+
+	private PluginPreset read(String shareCode) throws IOException
+	{
+		try (Reader reader = new InputStreamReader(PresetShareCode.read(shareCode), StandardCharsets.UTF_8))
+		{
+			return gson.fromJson(reader, PluginPreset.class);
+		}
+	}
+
+	private static String createShareCode(int version, byte[] json) throws IOException
+	{
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (DeflaterOutputStream outputStream = new DeflaterOutputStream(compressed))
+		{
+			outputStream.write(json);
+		}
+
+		CRC32 checksum = new CRC32();
+		checksum.update(compressed.toByteArray());
+		ByteBuffer code = ByteBuffer.allocate(5 + compressed.size())
+			.put((byte) version)
+			.putInt((int) checksum.getValue())
+			.put(compressed.toByteArray());
+
+		return "PPS" + Base64.getUrlEncoder().withoutPadding().encodeToString(code.array());
+	}
+
+	private static void assertFails(String shareCode, String reason)
+	{
+		try (InputStream inputStream = PresetShareCode.read(shareCode))
+		{
+			ByteStreams.exhaust(inputStream);
+			fail("Broken share code was read");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().contains(reason));
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compares reading and writing a large preset with the streaming adapters against reflection, by time and by bytes
+ * allocated. Rounds of both are interleaved and the best round of each counts, so that warmup and noise affect both alike.
+ * <p>
+ * Not part of the unit tests, since timings depend on the machine. Run the main method by hand.
+ */
+@Slf4j
+public class PresetTypeAdaptersBenchmark
+{
+	private static final int ROUNDS = 10;
+	private static final int OPERATIONS_PER_ROUND = 5;
+
+	private final PluginPreset preset = PresetTypeAdaptersTest.createLargePreset(200, 30);
+	private final String json = new Gson().toJson(preset);
+
+	public static void main(String[] args)
+	{
+		new PresetTypeAdaptersBenchmark().run();
+	}
+
+	private void run()
+	{
+		Gson reflection = new Gson();
+		Gson adapters = PresetTypeAdapters.register(reflection);
+
+		Result reflectionWrite = new Result();
+		Result reflectionRead = new Result();
+		Result adaptersWrite = new Result();
+		Result adaptersRead = new Result();
+		for (int round = 0; round < ROUNDS; round++)
+		{
+			// Garbage of the previous round is not collected in the middle of the next one
+			System.gc();
+			reflectionWrite.measure(() -> write(reflection));
+			adaptersWrite.measure(() -> write(adapters));
+			reflectionRead.measure(() -> read(reflection));
+			adaptersRead.measure(() -> read(adapters));
+		}
+
+		log.info(String.format("Preset of %d kB", json.length() / 1024));
+		log.info(String.format("Write, reflection: %s, adapters: %s", reflectionWrite, adaptersWrite));
+		log.info(String.format("Read, reflection: %s, adapters: %s", reflectionRead, adaptersRead));
+	}
+
+	private void write(Gson gson)
+	{
+		gson.toJson(preset, PluginPreset.class, new StringWriter(json.length()));
+	}
+
+	private void read(Gson gson)
+	{
+		gson.fromJson(json, PluginPreset.class);
+	}
+
+	/**
+	 * @return bytes allocated by this thread so far, or -1 if the JVM can't tell
+	 */
+	private static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if (threadMXBean instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Best time and allocation per operation over the rounds.
+	 */
+	private static class Result
+	{
+		private long nanos = Long.MAX_VALUE;
+		private long bytes = Long.MAX_VALUE;
+
+		private void measure(Runnable operation)
+		{
+			long startBytes = allocatedBytes();
+			long start = System.nanoTime();
+			for (int i = 0; i < OPERATIONS_PER_ROUND; i++)
+			{
+				operation.run();
+			}
+			nanos = Math.min(nanos, (System.nanoTime() - start) / OPERATIONS_PER_ROUND);
+			bytes = Math.min(bytes, (allocatedBytes() - startBytes) / OPERATIONS_PER_ROUND);
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("%.2f ms, %d kB allocated", nanos / 1e6, bytes / 1024);
+		}
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2022, antero111 <https://github.com/antero111>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.pluginpresets;
+
+import com.google.gson.Gson;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import net.runelite.client.config.Keybind;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import org.junit.Test;
+
+public class PresetTypeAdaptersTest
+{
+	private final Gson reflection = new Gson();
+	private final Gson adapters = PresetTypeAdapters.register(new Gson());
+
+	@Test
+	public void writesSameJsonAsReflection()
+	{
+		PluginPreset preset = createLargePreset(50, 20);
+
+		assertArrayEquals(toJsonBytes(reflection, preset), toJsonBytes(adapters, preset));
+	}
+
+	@Test
+	public void writesSameJsonAsReflectionWithoutOptionalFields()
+	{
+		PluginPreset preset = new PluginPreset("Empty");
+		preset.setLocal(null);
+
+		assertArrayEquals(toJsonBytes(reflection, preset), toJsonBytes(adapters, preset));
+	}
+
+	@Test
+	public void readsWhatReflectionWrites()
+	{
+		PluginPreset preset = createLargePreset(50, 20);
+		String json = reflection.toJson(preset);
+
+		PluginPreset readPreset = adapters.fromJson(json, PluginPreset.class);
+
+		assertEquals(json, reflection.toJson(readPreset));
+		assertEquals(reflection.toJson(reflection.fromJson(json, PluginPreset.class)), reflection.toJson(readPreset));
+	}
+
+	@Test
+	public void roundTrip()
+	{
+		PluginPreset preset = createLargePreset(50, 20);
+		String json = adapters.toJson(preset);
+
+		assertEquals(json, adapters.toJson(adapters.fromJson(json, PluginPreset.class)));
+	}
+
+	@Test
+	public void storageStatusIsNotWritten()
+	{
+		PluginPreset preset = createLargePreset(1, 1);
+		preset.setLocal(true);
+
+		String json = adapters.toJson(preset);
+		assertFalse(json.contains("\"local\""));
+		assertEquals(true, preset.getLocal());
+
+		preset.setLocal(null);
+		assertEquals(reflection.toJson(preset), json);
+	}
+
+	@Test
+	public void missingFieldsAreLeftEmpty()
+	{
+		PluginPreset preset = adapters.fromJson("{\"name\":\"Preset\",\"unknown\":[1,{\"a\":2}]}", PluginPreset.class);
+
+		assertEquals("Preset", preset.getName());
+		assertEquals(0, preset.getId());
+		assertNull(preset.getLocal());
+		assertNull(preset.getKeybind());
+		assertNull(preset.getPluginConfigs());
+	}
+
+	/**
+	 * Preset with nulls in every nullable field somewhere, custom settings and characters that json escapes.
+	 * Storage status is left out, as only reflection writes it.
+	 */
+	static PluginPreset createLargePreset(int configCount, int settingCount)
+	{
+		PluginPreset preset = new PluginPreset("Large \"preset\" <ü>");
+		preset.setId(1650000000000L);
+		preset.setLocal(null);
+		preset.setKeybind(new Keybind(65, 128));
+		preset.setLoadOnFocus(true);
+		preset.setAutoUpdated(false);
+
+		for (int i = 0; i < configCount; i++)
+		{
+			List<PluginSetting> settings = new ArrayList<>();
+			for (int j = 0; j < settingCount; j++)
+			{
+				String value = j % 11 == 0 ? null : "value " + i + "\n" + j;
+				String customConfigName = j % 7 == 0 ? "custom" : null;
+				settings.add(new PluginSetting("Setting " + j, "key" + j, value, customConfigName, "config" + i));
+			}
+			Boolean enabled = i % 3 == 0 ? null : i % 2 == 0;
+			preset.getPluginConfigs().add(new PluginConfig("Plugin " + i, "config" + i, enabled, settings));
+		}
+		return preset;
+	}
+
+	private static byte[] toJsonBytes(Gson gson, PluginPreset preset)
+	{
+		return gson.toJson(preset).getBytes(StandardCharsets.UTF_8);
+	}
+}